@@ -0,0 +1,69 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dada.AsFar;
+import dada.sim.Simulator;
+import dada.sim.SyncSimulator;
+
+/**
+ * AsFar is a ring protocol: passive entities relay every election message to
+ * all other ports, which never ends on graphs with more than one cycle.
+ * {@link #electSync} runs it in the synchronous rounds it assumes.
+ */
+public class AsFarBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring" })
+	public String family;
+
+	@Param({ "1024", "65536", "1048576" })
+	public int size;
+
+	/**
+	 * Secondary JMH result: synchronous rounds per second
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class RoundCounter {
+
+		public long rounds;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			rounds = 0;
+		}
+	}
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Benchmark
+	public Simulator elect(MessageCounter counter) {
+		return run(AsFar::new, counter);
+	}
+
+	@Benchmark
+	public SyncSimulator electSync(MessageCounter messages, RoundCounter rounds) {
+		SyncSimulator sim = new SyncSimulator(topology, AsFar::new)
+				.inputs(node -> inputs[node])
+				.console(null)
+				.initiate(0);
+		sim.run();
+		messages.messages += sim.messages();
+		rounds.rounds += sim.rounds();
+		return sim;
+	}
+}
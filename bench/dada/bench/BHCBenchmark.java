@@ -0,0 +1,103 @@
+package dada.bench;
+
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dada.BHC;
+import dada.sim.BoardSimulator;
+import distributed.plugin.runtime.engine.BoardAgent;
+
+/**
+ * Black hole search by co-located {@link BHC} agents on a ring, with the black
+ * hole at a random node. The secondary result is agent moves per second; the
+ * setup checks that the black hole is found, only next to it. {@link Checks}
+ * reports the moves and time of a search (they do not vary between runs), to
+ * compare the numbers of agents.
+ */
+public class BHCBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring" })
+	public String family;
+
+	@Param({ "1024", "65536", "1048576" })
+	public int size;
+
+	@Param({ "2", "3", "4" })
+	public int agents;
+
+	private int blackHole;
+
+	/**
+	 * Secondary JMH result: agent moves per second
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class MoveCounter {
+
+		public long moves;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			moves = 0;
+		}
+	}
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		blackHole = 1 + new SplittableRandom(SEED).nextInt(topology.size() - 1);
+		BoardSimulator sim = execute();
+		int found = 0;
+		for (BoardAgent agent : sim.agents()) {
+			if (agent.getState() == BHC.STATE_AGENT_FOUND_BH || agent.getState() == BHC.STATE_AGENT_DONE) {
+				found++;
+			}
+		}
+		int n = topology.size();
+		for (int v = 0; v < n; v++) {
+			if (sim.nodeStateOf(v) == BHC.STATE_NODE_TO_BH && v != (blackHole + 1) % n && v != (blackHole + n - 1) % n) {
+				found = 0;
+			}
+		}
+		if (found == 0 || agents == 2 && found != 1) {
+			throw new IllegalStateException(found + " agents found the black hole at " + topology.name(blackHole));
+		}
+	}
+
+	BoardSimulator execute() {
+		BoardSimulator sim = new BoardSimulator(topology, BHC::new)
+				.console(null)
+				.blackHole(blackHole)
+				.inputs(node -> node == 0 ? Integer.toString(agents) : null);
+		for (int i = 0; i < agents; i++) {
+			sim.place(0);
+		}
+		sim.run();
+		return sim;
+	}
+
+	@Benchmark
+	public BoardSimulator search(MoveCounter counter) {
+		BoardSimulator sim = execute();
+		counter.moves += sim.moves();
+		return sim;
+	}
+}
@@ -0,0 +1,142 @@
+package dada.bench;
+
+import dada.CountingRanking;
+import dada.Ranking;
+import dada.sim.BoardSimulator;
+import dada.sim.LinkDelay;
+import dada.sim.Simulator;
+import dada.sim.Topology;
+import distributed.plugin.runtime.IMessage;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Runs the correctness checks of the benchmarks without JMH, e.g.
+ * {@code java dada.bench.Checks}: the setup of every benchmark that checks
+ * its results, on every family at 256 nodes. Every check throws
+ * {@link IllegalStateException} on the first wrong result. Also reports the
+ * simulated latencies of {@link RankingLatencyBenchmark}, the encoded
+ * sizes of {@link RankingTreeWireBenchmark} and the moves and time of
+ * {@link BHCBenchmark}'s searches. First of all it
+ * checks that links stay FIFO when the engine is stepped with
+ * {@link Simulator#run(long)}.
+ */
+public class Checks {
+
+	private static final String[] FAMILIES = { "ring", "tree", "hypercube", "random" };
+	private static final int SIZE = 256;
+	private static final int BHC_RING = 65536;
+
+	public static void main(String[] args) throws Exception {
+		checkSteppedFifo();
+		System.out.println("Links stay FIFO across run(until) steps");
+
+		for (int entries : new int[] { 1, 16, 256 }) {
+			RankingTreeWireBenchmark wire = new RankingTreeWireBenchmark();
+			wire.entries = entries;
+			wire.setUp();
+			System.out.printf("RankingTree wire format round-trips, %d entries: codec %d bytes, java %d, legacy %d%n",
+					entries, wire.codecEncode().length, wire.javaEncode().length, wire.legacyEncode().length);
+		}
+
+		for (String family : FAMILIES) {
+			ConvergecastBenchmark convergecast = new ConvergecastBenchmark();
+			convergecast.family = family;
+			convergecast.size = SIZE;
+			convergecast.buildTopology();
+
+			PrimeCountBenchmark primes = new PrimeCountBenchmark();
+			primes.family = family;
+			primes.size = SIZE;
+			primes.limit = 1_000_000;
+			primes.buildTopology();
+
+			RankingQueriesBenchmark queries = new RankingQueriesBenchmark();
+			queries.family = family;
+			queries.size = SIZE;
+			queries.queries = 16;
+			queries.buildTopology();
+
+			StreamingRankingBenchmark streaming = new StreamingRankingBenchmark();
+			streaming.family = family;
+			streaming.size = SIZE;
+			streaming.buildTopology();
+
+			RankingLatencyBenchmark latency = new RankingLatencyBenchmark();
+			latency.family = family;
+			latency.size = SIZE;
+			latency.maxDelay = 100;
+			latency.buildTopology();
+			System.out.printf("%s: checked, latency rank %d, rankByOffsets %d%n", family,
+					latency.latency(Ranking::new), latency.latency(CountingRanking::new));
+		}
+
+		for (int agents = 2; agents <= 4; agents++) {
+			BHCBenchmark bhc = new BHCBenchmark();
+			bhc.family = "ring";
+			bhc.size = BHC_RING;
+			bhc.agents = agents;
+			bhc.buildTopology();
+			BoardSimulator search = bhc.execute();
+			System.out.printf("BHC on a ring of %d, %d agents: %d moves, time %d%n", BHC_RING, agents,
+					search.moves(), search.now());
+		}
+	}
+
+	/**
+	 * Sends bursts down one link with random delays, a burst at every step of
+	 * {@link Simulator#run(long)}, and checks they arrive in send order
+	 */
+	private static void checkSteppedFifo() {
+		Topology pair = new Topology.Builder(2).link(0, 1).build();
+		for (long seed = 0; seed < 100; seed++) {
+			Simulator sim = new Simulator(pair, Sequence::new)
+					.delay(LinkDelay.uniform(seed, 1, 10))
+					.console(null);
+			for (long until = 0; until < 200; until++) {
+				sim.initiate(0).run(until);
+			}
+			sim.run();
+			Sequence receiver = (Sequence) sim.entity(1);
+			if (receiver.next != 200 * Sequence.BURST) {
+				throw new IllegalStateException("Seed " + seed + ": " + receiver.next + " messages arrived, not "
+						+ 200 * Sequence.BURST);
+			}
+		}
+	}
+
+	/**
+	 * Sends numbered messages on every {@link #init()}, checks their order
+	 * on receipt
+	 */
+	static class Sequence extends Entity {
+		private static final long serialVersionUID = 1L;
+
+		static final int BURST = 4;
+
+		int next;
+
+		Sequence() {
+			super(0);
+		}
+
+		@Override
+		public void init() {
+			for (int i = 0; i < BURST; i++) {
+				sendToAll("Sequence", Integer.valueOf(next++));
+			}
+		}
+
+		@Override
+		public void receive(String incomingPort, IMessage message) {
+			int number = (Integer) message.getContent();
+			if (number != next) {
+				throw new IllegalStateException("Got message " + number + ", expected " + next);
+			}
+			next++;
+		}
+
+		@Override
+		public void alarmRing() {
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package dada.bench;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import dada.Combiner;
+import dada.Combiners;
+import dada.Convergecast;
+import dada.Kll;
+import dada.sim.Simulator;
+
+/**
+ * {@link Convergecast} with the {@link Combiners} against collecting every
+ * input at the root, as the COLLECT phase of {@code Ranking} does. The setup
+ * checks every combiner, the sketches within their stated error.
+ */
+public class ConvergecastBenchmark extends ProtocolBenchmark {
+
+	static final int TOP_K = 16;
+	static final int QUANTILES_K = 200;
+	static final int DISTINCT_P = 12;
+
+	@Param({ "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "256", "4096", "65536" })
+	public int size;
+
+	/**
+	 * Every input, unmerged: O(sub-tree) per message
+	 */
+	private static final Combiner<long[]> COLLECT_ALL = new Combiner<long[]>() {
+		@Override
+		public long[] of(String input) {
+			return new long[] { Long.parseLong(input) };
+		}
+
+		@Override
+		public long[] merge(long[] a, long[] b) {
+			long[] all = Arrays.copyOf(a, a.length + b.length);
+			System.arraycopy(b, 0, all, a.length, b.length);
+			return all;
+		}
+	};
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		int n = topology.size();
+		check("sum", result(Combiners.sum()), (long) n * (n - 1) / 2);
+		check("count", result(Combiners.count()), (long) n);
+		check("min", result(Combiners.min()), 0L);
+		check("max", result(Combiners.max()), (long) n - 1);
+		long[] top = new long[Math.min(TOP_K, n)];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = n - 1 - i;
+		}
+		check("topK", result(Combiners.topK(TOP_K)), Arrays.toString(top));
+		// the inputs are 0..n-1, so the rank of a value is the value itself
+		long median = ((Kll) result(Combiners.quantiles(QUANTILES_K))).quantile(0.5);
+		within("quantiles median rank", median, n / 2.0, 3.0 / QUANTILES_K * n);
+		long distinct = (Long) result(Combiners.distinct(DISTINCT_P));
+		// three standard errors
+		within("distinct", distinct, n, 3 * 1.04 / Math.sqrt(1 << DISTINCT_P) * n);
+		long[] all = (long[]) result(COLLECT_ALL);
+		Arrays.sort(all);
+		for (int i = 0; i < n; i++) {
+			if (all[i] != i) {
+				throw new IllegalStateException("collectAll is missing " + i);
+			}
+		}
+	}
+
+	private static void within(String name, long result, double expected, double error) {
+		if (Math.abs(result - expected) > error) {
+			throw new IllegalStateException(name + " is " + result + ", not within " + error + " of " + expected);
+		}
+	}
+
+	private Object result(Combiner<?> combiner) {
+		return ((Convergecast<?>) aggregate(combiner, new MessageCounter()).entity(0)).result();
+	}
+
+	private Simulator aggregate(Combiner<?> combiner, MessageCounter counter) {
+		return run(() -> new Convergecast<>(combiner), counter);
+	}
+
+	@Benchmark
+	public Simulator sum(MessageCounter counter) {
+		return aggregate(Combiners.sum(), counter);
+	}
+
+	@Benchmark
+	public Simulator topK(MessageCounter counter) {
+		return aggregate(Combiners.topK(TOP_K), counter);
+	}
+
+	@Benchmark
+	public Simulator quantiles(MessageCounter counter) {
+		return aggregate(Combiners.quantiles(QUANTILES_K), counter);
+	}
+
+	@Benchmark
+	public Simulator distinct(MessageCounter counter) {
+		return aggregate(Combiners.distinct(DISTINCT_P), counter);
+	}
+
+	@Benchmark
+	public Simulator collectAll(MessageCounter counter) {
+		return aggregate(COLLECT_ALL, counter);
+	}
+}
@@ -0,0 +1,150 @@
+package dada.bench;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import dada.Alternate;
+import dada.AsFar;
+import dada.Peterson;
+import dada.RingElection;
+import dada.Stages;
+import dada.StagesWithFeedback;
+import dada.sim.LinkDelay;
+import dada.sim.Simulator;
+import dada.sim.Topology;
+
+/**
+ * Side-by-side cost of the ring elections. For every ring size and identity
+ * placement each election runs with every entity a candidate, and the table
+ * gives messages, messages / (n log2 n), time and wall time. Every run is
+ * checked to end with one leader and n - 1 followers, and the leader is
+ * reported by name.
+ *
+ * <pre>
+ * java dada.bench.Elections [--delay=min,max] [--seed=n] [n...]
+ * </pre>
+ *
+ * Placements are random, ascending and descending along the ring (entity i
+ * gets identity i, or n - 1 - i), the worst cases of the elections that relay
+ * identities as far as they are smaller, and bit-reversal (entity i gets i
+ * with its bits reversed), under which exactly every other candidate is a
+ * local minimum in every stage, the worst case of {@link Stages}. AsFar is
+ * left out of sorted placements on rings larger than 8192. Peterson runs on a
+ * unidirectional ring, the others on a bidirectional one. Time is that of
+ * {@link Simulator}, with unit link delays unless {@code --delay} is given.
+ */
+public class Elections {
+
+	private static final String[] PLACEMENTS = { "random", "ascending", "descending", "bit-reversal" };
+
+	// AsFar costs about n^2 / 2 messages under sorted placements
+	private static final int QUADRATIC_LIMIT = 8192;
+
+	public static void main(String[] args) {
+		long minDelay = 1;
+		long maxDelay = 1;
+		long seed = ProtocolBenchmark.SEED;
+		int[] sizes = { 1024, 16384, 131072 };
+		int count = 0;
+		for (String arg : args) {
+			if (arg.startsWith("--delay=")) {
+				String[] range = arg.substring("--delay=".length()).split(",");
+				minDelay = Long.parseLong(range[0]);
+				maxDelay = Long.parseLong(range[range.length - 1]);
+			} else if (arg.startsWith("--seed=")) {
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			} else {
+				if (count == 0) {
+					sizes = new int[args.length];
+				}
+				sizes[count++] = Integer.parseInt(arg);
+			}
+		}
+		if (count > 0) {
+			sizes = Arrays.copyOf(sizes, count);
+		}
+
+		Map<String, Supplier<? extends RingElection>> elections = new LinkedHashMap<>();
+		elections.put("AsFar", AsFar::new);
+		elections.put("Stages", Stages::new);
+		elections.put("StagesWithFeedback", StagesWithFeedback::new);
+		elections.put("Alternate", Alternate::new);
+		elections.put("Peterson", Peterson::new);
+
+		System.out.printf("%-20s %-12s %9s %12s %9s %10s %9s  %s%n", "election", "placement", "n", "messages",
+				"/n log n", "time", "wall ms", "leader");
+		for (int n : sizes) {
+			Topology bidirectional = Topologies.build(Topologies.RING, n, seed);
+			Topology unidirectional = Topologies.build(Topologies.UNIDIRECTIONAL_RING, n, seed);
+			for (String placement : PLACEMENTS) {
+				IntFunction<String> inputs = placement(placement, n, seed);
+				for (Map.Entry<String, Supplier<? extends RingElection>> election : elections.entrySet()) {
+					if (election.getKey().equals("AsFar") && n > QUADRATIC_LIMIT
+							&& (placement.equals("ascending") || placement.equals("descending"))) {
+						continue;
+					}
+					Topology ring = election.getKey().equals("Peterson") ? unidirectional : bidirectional;
+					LinkDelay delay = minDelay == 1 && maxDelay == 1 ? LinkDelay.UNIT
+							: LinkDelay.uniform(seed, minDelay, maxDelay);
+					Simulator sim = new Simulator(ring, election.getValue())
+							.inputs(inputs)
+							.delay(delay)
+							.console(null);
+					for (int v = 0; v < n; v++) {
+						sim.initiate(v);
+					}
+					long start = System.nanoTime();
+					sim.run();
+					long wall = (System.nanoTime() - start) / 1000000;
+					int leader = leader(sim, n, election.getKey());
+					double perNLogN = sim.messages() / (n * (Math.log(n) / Math.log(2)));
+					System.out.printf("%-20s %-12s %9d %12d %9.2f %10d %9d  %s%n", election.getKey(), placement, n,
+							sim.messages(), perNLogN, sim.now(), wall, ring.name(leader));
+				}
+			}
+		}
+	}
+
+	private static IntFunction<String> placement(String placement, int n, long seed) {
+		switch (placement) {
+		case "random":
+			String[] values = Topologies.distinctValues(n, seed);
+			return node -> values[node];
+		case "ascending":
+			return Integer::toString;
+		case "descending":
+			return node -> Integer.toString(n - 1 - node);
+		case "bit-reversal":
+			int bits = 32 - Integer.numberOfLeadingZeros(n - 1);
+			return node -> Integer.toString(Integer.reverse(node) >>> (32 - bits));
+		default:
+			throw new IllegalArgumentException("Unknown placement " + placement);
+		}
+	}
+
+	/**
+	 * The leader, after checking that there is one and everybody else follows
+	 */
+	private static int leader(Simulator sim, int n, String election) {
+		int leader = -1;
+		int leaders = 0;
+		int followers = 0;
+		for (int v = 0; v < n; v++) {
+			int state = sim.entity(v).getState();
+			if (state == RingElection.STATE_LEADER) {
+				leader = v;
+				leaders++;
+			} else if (state == RingElection.STATE_FOLLOWER) {
+				followers++;
+			}
+		}
+		if (leaders != 1 || followers != n - 1) {
+			throw new IllegalStateException(election + " ended with " + leaders + " leaders and " + followers
+					+ " followers out of " + n);
+		}
+		return leader;
+	}
+}
@@ -0,0 +1,31 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import dada.Flooding;
+import dada.sim.Simulator;
+
+public class FloodingBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring", "tree", "hypercube", "mesh", "random", "powerlaw" })
+	public String family;
+
+	@Param({ "1024", "65536", "1048576" })
+	public int size;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Benchmark
+	public Simulator flood(MessageCounter counter) {
+		return run(Flooding::new, counter);
+	}
+}
@@ -0,0 +1,35 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import dada.FloodingUnidir;
+import dada.sim.Simulator;
+
+/**
+ * On bidirectional families every port is an out port, so this measures the
+ * cost of sending back to the sender as well.
+ */
+public class FloodingUnidirBenchmark extends ProtocolBenchmark {
+
+	@Param({ "uring", "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "1024", "65536", "1048576" })
+	public int size;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Benchmark
+	public Simulator flood(MessageCounter counter) {
+		return run(FloodingUnidir::new, counter);
+	}
+}
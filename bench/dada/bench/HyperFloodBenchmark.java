@@ -0,0 +1,34 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import dada.HyperFlood;
+import dada.sim.Simulator;
+
+/**
+ * HyperFlood only reaches every node on a hypercube labelled by dimension.
+ */
+public class HyperFloodBenchmark extends ProtocolBenchmark {
+
+	@Param({ "hypercube" })
+	public String family;
+
+	@Param({ "1024", "65536", "1048576" })
+	public int size;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Benchmark
+	public Simulator flood(MessageCounter counter) {
+		return run(HyperFlood::new, counter);
+	}
+}
@@ -0,0 +1,22 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary JMH result: messages sent per second of benchmark time
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class MessageCounter {
+
+	public long messages;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		messages = 0;
+	}
+}
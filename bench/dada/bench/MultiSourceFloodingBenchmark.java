@@ -0,0 +1,101 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dada.MultiSourceFlooding;
+import dada.sim.Simulator;
+
+/**
+ * Broadcast throughput of {@link MultiSourceFlooding}: {@code sources}
+ * initiators spread over the network each send {@code broadcasts} broadcasts,
+ * one per time unit, so that many are in flight at once. The setup checks that
+ * every entity got every broadcast exactly once.
+ */
+public class MultiSourceFloodingBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring", "hypercube", "random" })
+	public String family;
+
+	@Param({ "1024", "65536" })
+	public int size;
+
+	@Param({ "1", "16" })
+	public int sources;
+
+	@Param({ "64" })
+	public int broadcasts;
+
+	private int[] initiators;
+
+	/**
+	 * Secondary JMH result: broadcasts delivered to the whole network per second
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class BroadcastCounter {
+
+		public long broadcasts;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			broadcasts = 0;
+		}
+	}
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		int n = topology.size();
+		initiators = new int[sources];
+		for (int i = 0; i < sources; i++) {
+			initiators[i] = (int) ((long) i * n / sources);
+			inputs[initiators[i]] = Integer.toString(broadcasts);
+		}
+		Simulator sim = execute();
+		long total = (long) sources * broadcasts;
+		long expected = total * (topology.slots() - n + 1);
+		for (int v = 0; v < n; v++) {
+			long delivered = ((MultiSourceFlooding) sim.entity(v)).getDelivered();
+			if (delivered != total) {
+				throw new IllegalStateException(topology.name(v) + " got " + delivered + " of " + total + " broadcasts");
+			}
+		}
+		if (sim.messages() != expected) {
+			throw new IllegalStateException(sim.messages() + " messages, expected " + expected);
+		}
+	}
+
+	private Simulator execute() {
+		Simulator sim = new Simulator(topology, MultiSourceFlooding::new)
+				.inputs(node -> inputs[node])
+				.console(null)
+				.initiate(initiators);
+		sim.run();
+		return sim;
+	}
+
+	@Benchmark
+	public Simulator flood(MessageCounter messages, BroadcastCounter counter) {
+		Simulator sim = execute();
+		messages.messages += sim.messages();
+		counter.broadcasts += (long) sources * broadcasts;
+		return sim;
+	}
+}
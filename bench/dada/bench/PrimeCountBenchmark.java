@@ -0,0 +1,74 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import dada.PrimeCount;
+import dada.Sieve;
+import dada.sim.ParallelSimulator;
+import dada.sim.Simulator;
+
+/**
+ * Primes up to {@code limit} counted by {@link PrimeCount}, every entity
+ * sieving its share, on the sequential and the parallel engine, against
+ * {@link Sieve} on the fork-join pool of a single JVM. The setup checks that
+ * the protocol gets the same count.
+ */
+public class PrimeCountBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "16", "256", "4096" })
+	public int size;
+
+	@Param({ "100000000" })
+	public long limit;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		Simulator sim = count(new MessageCounter());
+		check("primes up to " + limit, ((PrimeCount) sim.entity(0)).count(), Sieve.pi(limit));
+	}
+
+	@Benchmark
+	public Simulator count(MessageCounter counter) {
+		Simulator sim = new Simulator(topology, PrimeCount::new)
+				.inputs(node -> node == 0 ? Long.toString(limit) : null)
+				.console(null)
+				.initiate(0);
+		sim.run();
+		counter.messages += sim.messages();
+		return sim;
+	}
+
+	@Benchmark
+	public ParallelSimulator countInParallel(MessageCounter counter) {
+		ParallelSimulator sim = new ParallelSimulator(topology, PrimeCount::new)
+				.inputs(node -> node == 0 ? Long.toString(limit) : null)
+				.console(null)
+				.initiate(0);
+		sim.run();
+		counter.messages += sim.messages();
+		return sim;
+	}
+
+	@Benchmark
+	public long forkJoin() {
+		return Sieve.pi(limit);
+	}
+}
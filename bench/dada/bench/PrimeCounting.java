@@ -0,0 +1,59 @@
+package dada.bench;
+
+import dada.Lucy;
+import dada.Sieve;
+
+/**
+ * Prime counting by {@link Lucy} against {@link Sieve}, for x = 10^k. Both
+ * results are checked against the known values of pi(10^k), and against each
+ * other; the sieve stops at {@code --sieve=max}.
+ *
+ * <pre>
+ * java dada.bench.PrimeCounting [--sieve=max] [maxExponent]
+ * </pre>
+ */
+public class PrimeCounting {
+
+	// pi(10^k)
+	private static final long[] KNOWN = { 0, 4, 25, 168, 1229, 9592, 78498, 664579, 5761455, 50847534, 455052511,
+			4118054813L, 37607912018L, 346065536839L, 3204941750802L, 29844570422669L };
+
+	public static void main(String[] args) {
+		int max = 13;
+		long sieveLimit = 10000000000L;
+		for (String arg : args) {
+			if (arg.startsWith("--sieve=")) {
+				sieveLimit = (long) Double.parseDouble(arg.substring("--sieve=".length()));
+			} else {
+				max = Integer.parseInt(arg);
+			}
+		}
+		if (max >= KNOWN.length) {
+			throw new IllegalArgumentException("Known up to 10^" + (KNOWN.length - 1));
+		}
+
+		System.out.printf("%6s %16s %12s %12s%n", "x", "pi(x)", "lucy ms", "sieve ms");
+		long x = 1;
+		for (int k = 1; k <= max; k++) {
+			x *= 10;
+			long start = System.nanoTime();
+			long lucy = Lucy.pi(x);
+			long lucyMs = (System.nanoTime() - start) / 1000000;
+			check("Lucy", k, lucy);
+			String sieveMs = "-";
+			if (x <= sieveLimit) {
+				start = System.nanoTime();
+				long sieve = Sieve.pi(x);
+				sieveMs = Long.toString((System.nanoTime() - start) / 1000000);
+				check("Sieve", k, sieve);
+			}
+			System.out.printf("%6s %16d %12d %12s%n", "10^" + k, lucy, lucyMs, sieveMs);
+		}
+	}
+
+	private static void check(String method, int k, long pi) {
+		if (pi != KNOWN[k]) {
+			throw new IllegalStateException(method + " counted " + pi + " primes up to 10^" + k + ", not " + KNOWN[k]);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package dada.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dada.Ranking;
+import dada.sim.Simulator;
+import dada.sim.Topology;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Common setup of the protocol benchmarks: one complete protocol execution
+ * (entity creation included) per benchmark operation, on a topology built once
+ * per trial. Subclasses declare the {@code family} and {@code size} parameters
+ * that make sense for their protocol, and check the protocol's results in
+ * their setup, which {@link Checks} also runs outside of JMH.
+ *
+ * Average time gives the wall time of an execution, throughput mode gives the
+ * {@link MessageCounter messages per second} next to executions per second.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.Throughput })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Benchmark)
+public abstract class ProtocolBenchmark {
+
+	static final long SEED = 42;
+
+	protected Topology topology;
+	protected String[] inputs;
+
+	protected abstract String family();
+
+	protected abstract int size();
+
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		topology = Topologies.build(family(), size(), SEED);
+		inputs = Topologies.distinctValues(topology.size(), SEED);
+	}
+
+	/**
+	 * Runs the protocol from node 0 to completion
+	 */
+	protected Simulator run(Supplier<? extends Entity> protocol, MessageCounter counter) {
+		Simulator sim = new Simulator(topology, protocol)
+				.inputs(node -> inputs[node])
+				.console(null)
+				.initiate(0);
+		sim.run();
+		counter.messages += sim.messages();
+		return sim;
+	}
+
+	/**
+	 * Checks that every entity's {@link Ranking#rank()} is one more than the
+	 * number of smaller values
+	 */
+	protected void checkRanks(Simulator sim, String[] values) {
+		int[] sorted = new int[values.length];
+		for (int node = 0; node < values.length; node++) {
+			sorted[node] = Integer.parseInt(values[node]);
+		}
+		Arrays.sort(sorted);
+		for (int node = 0; node < values.length; node++) {
+			int value = Integer.parseInt(values[node]);
+			// first index of value, the number of smaller ones
+			int low = 0;
+			int high = sorted.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (sorted[mid] < value) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			int rank = ((Ranking) sim.entity(node)).rank();
+			if (rank != low + 1) {
+				throw new IllegalStateException("Node " + node + " ranked " + rank + ", not " + (low + 1));
+			}
+		}
+	}
+
+	protected static void check(String name, Object result, Object expected) {
+		if (!expected.equals(result)) {
+			throw new IllegalStateException(name + " is " + result + ", not " + expected);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import dada.CountingRanking;
+import dada.Ranking;
+import dada.sim.Simulator;
+
+/**
+ * With {@link Ranking} every entity ends up receiving all n values, keep sizes
+ * small. {@link CountingRanking} only sends offsets down the tree.
+ */
+public class RankingBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "256", "1024", "4096" })
+	public int size;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Benchmark
+	public Simulator rank(MessageCounter counter) {
+		return run(Ranking::new, counter);
+	}
+
+	@Benchmark
+	public Simulator rankByOffsets(MessageCounter counter) {
+		return run(CountingRanking::new, counter);
+	}
+}
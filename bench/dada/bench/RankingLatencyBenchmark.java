@@ -0,0 +1,86 @@
+package dada.bench;
+
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import dada.CountingRanking;
+import dada.Ranking;
+import dada.sim.LinkDelay;
+import dada.sim.Simulator;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Ranking with link delays uniform in [1, {@code maxDelay}]. Benchmark time is
+ * wall time; {@link #latency(Supplier)} is the end-to-end latency in simulated
+ * time, the mean over {@link #RUNS} delay seeds, which is what overlapping the
+ * tree construction with the collection shortens. {@link Checks} reports it.
+ */
+public class RankingLatencyBenchmark extends ProtocolBenchmark {
+
+	static final int RUNS = 8;
+
+	@Param({ "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "256", "1024" })
+	public int size;
+
+	@Param({ "100" })
+	public long maxDelay;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		latency(Ranking::new);
+		latency(CountingRanking::new);
+	}
+
+	/**
+	 * Mean latency over {@link #RUNS} delay seeds, checking every ranking
+	 */
+	long latency(Supplier<? extends Entity> protocol) {
+		long latency = 0;
+		for (int seed = 0; seed < RUNS; seed++) {
+			Simulator sim = run(protocol, seed, new MessageCounter());
+			checkRanks(sim, inputs);
+			latency += sim.now();
+		}
+		return latency / RUNS;
+	}
+
+	private Simulator run(Supplier<? extends Entity> protocol, long seed, MessageCounter counter) {
+		Simulator sim = new Simulator(topology, protocol)
+				.inputs(node -> inputs[node])
+				.delay(LinkDelay.uniform(SEED + seed, 1, maxDelay))
+				.console(null)
+				.initiate(0);
+		sim.run();
+		counter.messages += sim.messages();
+		return sim;
+	}
+
+	@Benchmark
+	public Simulator rank(MessageCounter counter) {
+		return run(Ranking::new, 0, counter);
+	}
+
+	@Benchmark
+	public Simulator rankByOffsets(MessageCounter counter) {
+		return run(CountingRanking::new, 0, counter);
+	}
+}
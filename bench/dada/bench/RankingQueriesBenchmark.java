@@ -0,0 +1,76 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import dada.CountingRanking;
+import dada.sim.Simulator;
+
+/**
+ * {@code queries} rankings in a row from node 0, with new values every time,
+ * by {@link CountingRanking} rebuilding the spanning tree for every query or
+ * keeping the first one. One operation runs all the queries. The setup checks
+ * every rank.
+ */
+public class RankingQueriesBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "256", "1024" })
+	public int size;
+
+	@Param({ "1", "16" })
+	public int queries;
+
+	private String[][] queryInputs;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		queryInputs = new String[queries][];
+		for (int q = 0; q < queries; q++) {
+			queryInputs[q] = Topologies.distinctValues(topology.size(), SEED + q);
+		}
+		MessageCounter counter = new MessageCounter();
+		rank(false, counter);
+		rank(true, counter);
+	}
+
+	private Simulator rank(boolean keepTree, MessageCounter counter) {
+		int[] query = new int[1];
+		Simulator sim = new Simulator(topology, () -> new CountingRanking(keepTree))
+				.inputs(node -> queryInputs[query[0]][node])
+				.console(null);
+		for (int q = 0; q < queries; q++) {
+			query[0] = q;
+			sim.initiate(0).run();
+			checkRanks(sim, queryInputs[q]);
+		}
+		counter.messages += sim.messages();
+		return sim;
+	}
+
+	@Benchmark
+	public Simulator rebuildTree(MessageCounter counter) {
+		return rank(false, counter);
+	}
+
+	@Benchmark
+	public Simulator keepTree(MessageCounter counter) {
+		return rank(true, counter);
+	}
+}
@@ -0,0 +1,34 @@
+package dada.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import dada.RankingTree;
+import dada.sim.Simulator;
+
+/**
+ * RankingTree is only defined on trees.
+ */
+public class RankingTreeBenchmark extends ProtocolBenchmark {
+
+	@Param({ "tree" })
+	public String family;
+
+	@Param({ "256", "1024", "4096" })
+	public int size;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Benchmark
+	public Simulator rank(MessageCounter counter) {
+		return run(RankingTree::new, counter);
+	}
+}
@@ -0,0 +1,195 @@
+package dada.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dada.RankingTree.RankingMessage;
+import dada.RankingTree.RankingMessageNode;
+import dada.sim.Payloads;
+
+/**
+ * Encode/decode cost of a RankingTree message with the engine codec, with Java
+ * serialization of the same (Externalizable) message, and with the previous
+ * format (default serialization of an ArrayList of String/int pairs), which is
+ * replicated here.
+ *
+ * The setup checks that every format round-trips; {@link Checks} runs the
+ * same check outside of JMH and reports the encoded sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingTreeWireBenchmark {
+
+	@Param({ "1", "16", "256" })
+	public int entries;
+
+	private RankingMessage message;
+	private LegacyMessage legacy;
+	private byte[] codecBytes;
+	private byte[] javaBytes;
+	private byte[] legacyBytes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		SplittableRandom random = new SplittableRandom(ProtocolBenchmark.SEED);
+		ArrayList<RankingMessageNode> payload = new ArrayList<>();
+		legacy = new LegacyMessage();
+		for (int i = 0; i < entries; i++) {
+			String node = "n" + random.nextInt(1_000_000);
+			int value = random.nextInt(1_000_000);
+			payload.add(new RankingMessageNode(node, value));
+			legacy.payload.add(new LegacyNode(node, value));
+		}
+		message = new RankingMessage(true, false, payload);
+
+		codecBytes = codecEncode();
+		javaBytes = javaEncode();
+		legacyBytes = legacyEncode();
+		check("codec", (RankingMessage) codecDecode());
+		check("java", (RankingMessage) javaDecode());
+		if (!legacyDecode().toString().equals(legacy.toString())) {
+			throw new IllegalStateException(entries + " entries: legacy format does not round-trip");
+		}
+	}
+
+	private void check(String format, RankingMessage decoded) {
+		if (decoded.getIsFinalUpdate() != message.getIsFinalUpdate()
+				|| decoded.getNodeIsDone() != message.getNodeIsDone()
+				|| decoded.getPayload().size() != entries) {
+			throw new IllegalStateException(entries + " entries: " + format + " round-trip gives " + decoded);
+		}
+		for (int i = 0; i < entries; i++) {
+			RankingMessageNode sent = message.getPayload().get(i);
+			RankingMessageNode got = decoded.getPayload().get(i);
+			if (!got.getId().equals(sent.getId()) || got.getNodeValue() != sent.getNodeValue()) {
+				throw new IllegalStateException(entries + " entries: " + format + " round-trip turns entry " + i
+						+ " " + sent + " into " + got);
+			}
+		}
+	}
+
+	@Benchmark
+	public byte[] codecEncode() {
+		return Payloads.serialize(message);
+	}
+
+	@Benchmark
+	public Object codecDecode() {
+		return Payloads.deserialize(codecBytes);
+	}
+
+	@Benchmark
+	public byte[] javaEncode() throws IOException {
+		return serialize(message);
+	}
+
+	@Benchmark
+	public Object javaDecode() throws Exception {
+		return deserialize(javaBytes);
+	}
+
+	@Benchmark
+	public byte[] legacyEncode() throws IOException {
+		return serialize(legacy);
+	}
+
+	@Benchmark
+	public Object legacyDecode() throws Exception {
+		return deserialize(legacyBytes);
+	}
+
+	private static byte[] serialize(Object o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(o);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] data) throws Exception {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			return in.readObject();
+		}
+	}
+
+	/*
+	 * The format RankingTree used before the codec
+	 */
+
+	static class LegacyNode implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private String nodeId;
+		private int nodeValue;
+
+		LegacyNode(String nodeId, int nodeValue) {
+			this.nodeId = nodeId;
+			this.nodeValue = nodeValue;
+		}
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			out.writeObject(nodeId);
+			out.writeInt(nodeValue);
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			nodeId = (String) in.readObject();
+			nodeValue = in.readInt();
+		}
+
+		@Override
+		public String toString() {
+			return "{" + nodeId + ", " + nodeValue + "}";
+		}
+	}
+
+	static class LegacyMessage implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private boolean isFinalUpdate = true;
+		private boolean nodeIsDone = false;
+		private ArrayList<LegacyNode> payload = new ArrayList<>();
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			out.writeBoolean(isFinalUpdate);
+			out.writeBoolean(nodeIsDone);
+			out.writeObject(payload);
+		}
+
+		@SuppressWarnings("unchecked")
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+			isFinalUpdate = in.readBoolean();
+			nodeIsDone = in.readBoolean();
+			payload = (ArrayList<LegacyNode>) in.readObject();
+		}
+
+		@Override
+		public String toString() {
+			return isFinalUpdate + " " + nodeIsDone + " " + payload;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package dada.bench;
+
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import dada.Ranking;
+import dada.StreamingRanking;
+import dada.sim.LinkDelay;
+import dada.sim.Simulator;
+
+/**
+ * One input changing at a time, at a random node: {@link StreamingRanking}
+ * sending the change along the tree of its live entities, against ranking
+ * everything again with {@link Ranking}. In throughput mode an operation is an
+ * update, all ranks correct again at its end. The setup checks the streamed
+ * ranks after a series of updates, and after changes made while the ranking
+ * is still being built, with random delays, some of them at entities it has
+ * not reached yet, which start rankings of their own.
+ */
+public class StreamingRankingBenchmark extends ProtocolBenchmark {
+
+	@Param({ "ring", "tree", "hypercube", "random" })
+	public String family;
+
+	@Param({ "256", "1024", "4096" })
+	public int size;
+
+	private Simulator live;
+	private SplittableRandom random;
+
+	@Override
+	protected String family() {
+		return family;
+	}
+
+	@Override
+	protected int size() {
+		return size;
+	}
+
+	@Override
+	@Setup(Level.Trial)
+	public void buildTopology() {
+		super.buildTopology();
+		random = new SplittableRandom(SEED);
+		live = new Simulator(topology, StreamingRanking::new)
+				.inputs(node -> inputs[node])
+				.console(null)
+				.initiate(0);
+		live.run();
+		MessageCounter counter = new MessageCounter();
+		for (int i = 0; i < 100; i++) {
+			update(counter);
+		}
+		checkRanks(live, inputs);
+		checkChangesWhileRanking();
+	}
+
+	private void checkChangesWhileRanking() {
+		String[] values = inputs.clone();
+		Simulator sim = new Simulator(topology, StreamingRanking::new)
+				.inputs(node -> values[node])
+				.delay(LinkDelay.uniform(SEED, 1, 30))
+				.console(null)
+				.initiate(0);
+		for (long until = 5; until <= 200; until += 5) {
+			sim.run(until);
+			int node = random.nextInt(values.length);
+			values[node] = Integer.toString(random.nextInt(4 * values.length));
+			sim.initiate(node);
+		}
+		sim.run();
+		for (int node = 0; node < values.length; node++) {
+			if (sim.entity(node).getState() != Ranking.STATE_LIVE) {
+				throw new IllegalStateException(topology.name(node) + " is not live");
+			}
+		}
+		checkRanks(sim, values);
+	}
+
+	/**
+	 * Changes the input of a random node
+	 */
+	private int change() {
+		int node = random.nextInt(topology.size());
+		inputs[node] = Integer.toString(random.nextInt(4 * topology.size()));
+		return node;
+	}
+
+	@Benchmark
+	public int update(MessageCounter counter) {
+		int node = change();
+		long messages = live.messages();
+		live.initiate(node).run();
+		counter.messages += live.messages() - messages;
+		return ((Ranking) live.entity(node)).rank();
+	}
+
+	@Benchmark
+	public Simulator rankAgain(MessageCounter counter) {
+		change();
+		return run(Ranking::new, counter);
+	}
+}
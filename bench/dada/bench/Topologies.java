@@ -0,0 +1,69 @@
+package dada.bench;
+
+import java.util.SplittableRandom;
+
+import dada.sim.Generator;
+import dada.sim.Topology;
+
+/**
+ * Topology families used by the benchmarks, see {@link Generator}. Sizes are
+ * number of nodes, the hypercube rounds it down to a power of two and the mesh
+ * to a square. Random graphs (uniform and power law) have average degree 4
+ * around a random spanning tree.
+ */
+public final class Topologies {
+
+	public static final String RING = "ring";
+	public static final String UNIDIRECTIONAL_RING = "uring";
+	public static final String TREE = "tree";
+	public static final String HYPERCUBE = "hypercube";
+	public static final String MESH = "mesh";
+	public static final String RANDOM = "random";
+	public static final String POWER_LAW = "powerlaw";
+
+	private Topologies() {
+	}
+
+	public static Topology build(String family, int size, long seed) {
+		switch (family) {
+		case RING:
+			return Generator.ring(size, true).build();
+		case UNIDIRECTIONAL_RING:
+			return Generator.ring(size, false).build();
+		case TREE:
+			return Generator.tree(size, seed).build();
+		case HYPERCUBE:
+			return Generator.hypercube(31 - Integer.numberOfLeadingZeros(size)).build();
+		case MESH:
+			return Generator.mesh((int) Math.sqrt(size), (int) Math.sqrt(size)).build();
+		case RANDOM:
+			return Generator.erdosRenyi(size, 2L * size, seed, true).build();
+		case POWER_LAW:
+			return Generator.powerLaw(size, 2L * size, 2.5, seed, true).build();
+		default:
+			throw new IllegalArgumentException("Unknown topology family " + family);
+		}
+	}
+
+	/**
+	 * Distinct integer inputs in random order, as the ranking protocols need
+	 */
+	public static String[] distinctValues(int size, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = i;
+		}
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = values[i];
+			values[i] = values[j];
+			values[j] = t;
+		}
+		String[] inputs = new String[size];
+		for (int i = 0; i < size; i++) {
+			inputs[i] = Integer.toString(values[i]);
+		}
+		return inputs;
+	}
+}
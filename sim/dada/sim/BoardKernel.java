@@ -0,0 +1,44 @@
+package dada.sim;
+
+import java.util.List;
+
+import distributed.plugin.runtime.engine.BoardAgent;
+
+/**
+ * What a {@link BoardAgent} needs from the engine that runs it: whiteboards,
+ * node states and movement between nodes.
+ */
+public interface BoardKernel {
+
+	Topology topology();
+
+	/**
+	 * The whiteboard of a node, modifications must be followed by
+	 * {@link #boardChanged(int)}
+	 */
+	List<String> board(int node);
+
+	void boardChanged(int node);
+
+	/**
+	 * The typed whiteboard of a node, see {@link Whiteboard}
+	 */
+	Whiteboard whiteboard(int node);
+
+	int nodeState(int node);
+
+	void setNodeState(int node, int state);
+
+	/**
+	 * Moves the agent out of {@code node} through {@code port}
+	 */
+	void move(BoardAgent agent, int node, int port);
+
+	void register(BoardAgent agent, int node, BoardAgent.NotifyType type);
+
+	void setAlarm(BoardAgent agent, int delay);
+
+	String userInput(int node);
+
+	void print(String text);
+}
@@ -0,0 +1,217 @@
+package dada.sim;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import distributed.plugin.runtime.engine.BoardAgent;
+import distributed.plugin.runtime.engine.BoardAgent.NotifyType;
+
+/**
+ * Sequential discrete-event engine for mobile agents with whiteboards.
+ *
+ * Agents are placed on home nodes with {@link #place}, nodes marked with
+ * {@link #blackHole} swallow every agent that enters them. Moves, alarms and
+ * notifications are events in the same priority queue used by
+ * {@link Simulator}.
+ */
+public class BoardSimulator implements BoardKernel {
+
+	private final Topology topology;
+	private final Supplier<? extends BoardAgent> protocol;
+	private final EventQueue queue = new EventQueue();
+	private final List<BoardAgent> agents = new ArrayList<>();
+	private final BitSet blackHoles = new BitSet();
+
+	private final Map<Integer, List<String>> boards = new HashMap<>();
+	private final Whiteboard[] whiteboards;
+	private final Map<Integer, List<BoardAgent>> waiting = new HashMap<>();
+	private final int[] nodeStates;
+
+	private IntFunction<String> inputs = node -> null;
+	private LinkDelay delay = LinkDelay.UNIT;
+	private long[] lastArrival;
+	private PrintStream console = System.out;
+
+	private long now;
+	private long moves;
+
+	public BoardSimulator(Topology topology, Supplier<? extends BoardAgent> protocol) {
+		this.topology = topology;
+		this.protocol = protocol;
+		this.nodeStates = new int[topology.size()];
+		this.whiteboards = new Whiteboard[topology.size()];
+	}
+
+	public BoardSimulator inputs(IntFunction<String> inputs) {
+		this.inputs = inputs;
+		return this;
+	}
+
+	public BoardSimulator delay(LinkDelay delay) {
+		this.delay = delay;
+		this.lastArrival = delay.isConstant() ? null : new long[topology.slots()];
+		return this;
+	}
+
+	public BoardSimulator console(PrintStream console) {
+		this.console = console;
+		return this;
+	}
+
+	public BoardSimulator blackHole(int node) {
+		blackHoles.set(node);
+		return this;
+	}
+
+	/**
+	 * Creates a new agent at {@code home}, it will start at the current time
+	 */
+	public BoardAgent place(int home) {
+		BoardAgent agent = protocol.get();
+		agent.attach(this, "a" + agents.size(), home);
+		agents.add(agent);
+		Event e = new Event(now, Event.INIT, home, -1, null);
+		e.subject = agent;
+		queue.add(e);
+		return agent;
+	}
+
+	public long run() {
+		long processed = 0;
+		while (!queue.isEmpty()) {
+			Event e = queue.poll();
+			now = e.time;
+			BoardAgent agent = (BoardAgent) e.subject;
+			switch (e.kind) {
+			case Event.INIT:
+				agent.start();
+				break;
+			case Event.ARRIVE:
+				if (blackHoles.get(e.node)) {
+					// the agent is gone for good
+					break;
+				}
+				agent.arriveAt(e.node, e.port);
+				break;
+			case Event.DELIVER:
+				agent.signal(NotifyType.values()[e.port]);
+				break;
+			case Event.ALARM:
+				agent.ring();
+				break;
+			default:
+				throw new IllegalStateException("Unexpected event kind " + e.kind);
+			}
+			processed++;
+		}
+		return processed;
+	}
+
+	@Override
+	public Topology topology() {
+		return topology;
+	}
+
+	@Override
+	public List<String> board(int node) {
+		return boards.computeIfAbsent(node, k -> new ArrayList<>(4));
+	}
+
+	@Override
+	public void boardChanged(int node) {
+		List<BoardAgent> registered = waiting.remove(node);
+		if (registered != null) {
+			for (BoardAgent agent : registered) {
+				Event e = new Event(now, Event.DELIVER, node, NotifyType.BOARD_UPDATE.ordinal(), null);
+				e.subject = agent;
+				queue.add(e);
+			}
+		}
+	}
+
+	@Override
+	public Whiteboard whiteboard(int node) {
+		Whiteboard board = whiteboards[node];
+		if (board == null) {
+			board = new Whiteboard(this, node, topology.degree(node));
+			whiteboards[node] = board;
+		}
+		return board;
+	}
+
+	@Override
+	public int nodeState(int node) {
+		return nodeStates[node];
+	}
+
+	@Override
+	public void setNodeState(int node, int state) {
+		nodeStates[node] = state;
+	}
+
+	@Override
+	public void move(BoardAgent agent, int node, int port) {
+		int slot = topology.slot(node, port);
+		long arrival = now + delay.delay(slot);
+		if (lastArrival != null) {
+			arrival = Math.max(arrival, lastArrival[slot]);
+			lastArrival[slot] = arrival;
+		}
+		Event e = new Event(arrival, Event.ARRIVE, topology.target(slot), topology.reversePort(slot), null);
+		e.subject = agent;
+		queue.add(e);
+		moves++;
+	}
+
+	@Override
+	public void register(BoardAgent agent, int node, NotifyType type) {
+		// only board updates are produced by this engine
+		if (type == NotifyType.BOARD_UPDATE) {
+			waiting.computeIfAbsent(node, k -> new ArrayList<>(2)).add(agent);
+		}
+	}
+
+	@Override
+	public void setAlarm(BoardAgent agent, int delay) {
+		Event e = new Event(now + Math.max(delay, 0), Event.ALARM, agent.getNodeIndex(), -1, null);
+		e.subject = agent;
+		queue.add(e);
+	}
+
+	@Override
+	public String userInput(int node) {
+		return inputs.apply(node);
+	}
+
+	@Override
+	public void print(String text) {
+		if (console != null) {
+			console.println(text);
+		}
+	}
+
+	public List<BoardAgent> agents() {
+		return agents;
+	}
+
+	public int nodeStateOf(int node) {
+		return nodeStates[node];
+	}
+
+	public long now() {
+		return now;
+	}
+
+	/**
+	 * Agent moves so far
+	 */
+	public long moves() {
+		return moves;
+	}
+}
@@ -0,0 +1,163 @@
+package dada.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInput;
+
+/**
+ * Unsynchronized {@link ObjectInput} over a byte array, the counterpart of
+ * {@link BytesOutput}
+ */
+final class BytesInput implements ObjectInput {
+	private final byte[] buffer;
+	private final int end;
+	private int position;
+
+	BytesInput(byte[] buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.end = offset + length;
+	}
+
+	private void require(int n) throws EOFException {
+		if (end - position < n) {
+			throw new EOFException();
+		}
+	}
+
+	@Override
+	public int read() {
+		return position < end ? buffer[position++] & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b) {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (position >= end) {
+			return -1;
+		}
+		int n = Math.min(len, end - position);
+		System.arraycopy(buffer, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) {
+		int skipped = (int) Math.min(n, end - position);
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return end - position;
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		require(len);
+		System.arraycopy(buffer, position, b, off, len);
+		position += len;
+	}
+
+	@Override
+	public int skipBytes(int n) {
+		return (int) skip(n);
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readUnsignedByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return (byte) readUnsignedByte();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		require(1);
+		return buffer[position++] & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return (short) readUnsignedShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		require(2);
+		int v = ((buffer[position] & 0xFF) << 8) | (buffer[position + 1] & 0xFF);
+		position += 2;
+		return v;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char) readUnsignedShort();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		int v = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+				| ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+		position += 4;
+		return v;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public String readLine() {
+		throw new UnsupportedOperationException("readLine");
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		int length = readUnsignedShort();
+		require(length);
+		position -= 2;
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer, position, length + 2));
+		position += length + 2;
+		return in.readUTF();
+	}
+
+	@Override
+	public Object readObject() throws IOException {
+		byte[] data = new byte[readInt()];
+		readFully(data);
+		return Payloads.javaDeserialize(data);
+	}
+
+	@Override
+	public void close() {
+	}
+}
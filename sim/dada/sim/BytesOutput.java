@@ -0,0 +1,137 @@
+package dada.sim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Unsynchronized {@link ObjectOutput} into a growable byte array. Objects are
+ * written as length prefixed Java serialization.
+ */
+final class BytesOutput implements ObjectOutput {
+	private byte[] buffer;
+	private int size;
+
+	BytesOutput(int capacity) {
+		buffer = new byte[Math.max(capacity, 16)];
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+
+	private void ensure(int extra) {
+		if (size + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+		}
+	}
+
+	@Override
+	public void write(int b) {
+		ensure(1);
+		buffer[size++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b) {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensure(len);
+		System.arraycopy(b, off, buffer, size, len);
+		size += len;
+	}
+
+	@Override
+	public void writeBoolean(boolean v) {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(int v) {
+		write(v);
+	}
+
+	@Override
+	public void writeShort(int v) {
+		ensure(2);
+		buffer[size++] = (byte) (v >>> 8);
+		buffer[size++] = (byte) v;
+	}
+
+	@Override
+	public void writeChar(int v) {
+		writeShort(v);
+	}
+
+	@Override
+	public void writeInt(int v) {
+		ensure(4);
+		buffer[size++] = (byte) (v >>> 24);
+		buffer[size++] = (byte) (v >>> 16);
+		buffer[size++] = (byte) (v >>> 8);
+		buffer[size++] = (byte) v;
+	}
+
+	@Override
+	public void writeLong(long v) {
+		writeInt((int) (v >>> 32));
+		writeInt((int) v);
+	}
+
+	@Override
+	public void writeFloat(float v) {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	public void writeDouble(double v) {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	@Override
+	public void writeBytes(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			write(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeChars(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			writeChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeUTF(String s) {
+		// modified UTF-8 is fiddly, let the JDK do it
+		ByteArrayOutputStream utf = new ByteArrayOutputStream(s.length() + 2);
+		try {
+			new DataOutputStream(utf).writeUTF(s);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		write(utf.toByteArray());
+	}
+
+	@Override
+	public void writeObject(Object obj) {
+		byte[] data = Payloads.javaSerialize(obj);
+		writeInt(data.length);
+		write(data);
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,71 @@
+package dada.sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.lang.reflect.Constructor;
+
+/**
+ * Binary encoding of one content type, used by {@link Payloads} instead of
+ * Java serialization. Codecs write no class descriptors or headers, only what
+ * the type needs to be rebuilt.
+ */
+public interface Codec<T> {
+
+	Class<T> type();
+
+	void write(T value, DataOutput out) throws IOException;
+
+	T read(DataInput in) throws IOException;
+
+	/**
+	 * Codec for an {@link Externalizable} type: its own writeExternal/readExternal
+	 * without the ObjectOutputStream framing. Nested objects written with
+	 * {@code writeObject} fall back to Java serialization. {@link Payloads} always
+	 * hands codecs an ObjectOutput/ObjectInput.
+	 */
+	static <T extends Externalizable> Codec<T> externalizable(Class<T> type) {
+		Constructor<T> constructor;
+		try {
+			constructor = type.getConstructor();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(type.getName() + " needs a public no-arg constructor", e);
+		}
+		return new Codec<T>() {
+			@Override
+			public Class<T> type() {
+				return type;
+			}
+
+			@Override
+			public void write(T value, DataOutput out) throws IOException {
+				if (!(out instanceof ObjectOutput)) {
+					throw new IOException("Externalizable contents need an ObjectOutput");
+				}
+				value.writeExternal((ObjectOutput) out);
+			}
+
+			@Override
+			public T read(DataInput in) throws IOException {
+				T value;
+				try {
+					value = constructor.newInstance();
+				} catch (ReflectiveOperationException e) {
+					throw new IOException("Cannot instantiate " + type.getName(), e);
+				}
+				if (!(in instanceof ObjectInput)) {
+					throw new IOException("Externalizable contents need an ObjectInput");
+				}
+				try {
+					value.readExternal((ObjectInput) in);
+				} catch (ClassNotFoundException e) {
+					throw new IOException(e);
+				}
+				return value;
+			}
+		};
+	}
+}
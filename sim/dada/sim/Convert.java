@@ -0,0 +1,41 @@
+package dada.sim;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts between topology formats:
+ *
+ * <pre>
+ * java dada.sim.Convert &lt;input&gt; &lt;output&gt;
+ * </pre>
+ *
+ * The input may be a DisJ {@code .gph}, a {@link CsrFile} or an
+ * {@link EdgeList}. The output is a CSR file when it ends in {@code .csr} and
+ * an edge list otherwise.
+ */
+public class Convert {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: Convert <input> <output>");
+			System.exit(2);
+		}
+		Network network = Network.open(Paths.get(args[0]));
+		Topology topology = network.topology();
+		Path output = Paths.get(args[1]);
+		if (output.toString().endsWith(".csr")) {
+			CsrFile.write(topology, network.inputs(), output);
+		} else {
+			String[] inputs = new String[topology.size()];
+			for (int i = 0; i < inputs.length; i++) {
+				inputs[i] = network.inputs().apply(i);
+			}
+			EdgeList.write(topology, inputs, output);
+		}
+		if (network.initiators().length > 0) {
+			System.out.println("Initiators: " + String.join(" ", network.initiators()));
+		}
+		System.out.println(topology.size() + " nodes, " + topology.slots() + " port slots");
+	}
+}
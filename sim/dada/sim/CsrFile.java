@@ -0,0 +1,359 @@
+package dada.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+
+/**
+ * Binary topology format meant to be memory mapped: the CSR arrays of a
+ * {@link Topology} as they are laid out in memory, so opening a file costs a
+ * {@code mmap} and the pages are faulted in as the simulation touches them.
+ *
+ * All values are little endian; sections are 4-byte aligned:
+ *
+ * <pre>
+ * header    int magic "DCSR", int version, int nodes, int slots, int features, int 0
+ * offsets   int[nodes + 1]
+ * targets   int[slots]
+ * reverse   int[slots]
+ * labels    int[slots]            if features has LABELS
+ * flags     byte[slots]
+ * label dictionary string table   if features has LABELS
+ * names     string table          if features has NAMES
+ * inputs    string table          if features has INPUTS
+ * </pre>
+ *
+ * A string table is an int count, {@code count + 1} int byte offsets and the
+ * UTF-8 bytes. An empty input stands for no input.
+ *
+ * A single mapping is limited to 2 GB, which is about 200M port slots without
+ * names.
+ */
+public final class CsrFile {
+
+	public static final int MAGIC = 'D' | 'C' << 8 | 'S' << 16 | 'R' << 24;
+	public static final int VERSION = 1;
+
+	public static final int LABELS = 1;
+	public static final int NAMES = 2;
+	public static final int INPUTS = 4;
+
+	private static final int HEADER = 24;
+
+	private final Topology topology;
+	private final StringTable inputs;
+
+	private CsrFile(Topology topology, StringTable inputs) {
+		this.topology = topology;
+		this.inputs = inputs;
+	}
+
+	public Topology topology() {
+		return topology;
+	}
+
+	/**
+	 * User input of a node, {@code null} when not given
+	 */
+	public String input(int node) {
+		if (inputs == null) {
+			return null;
+		}
+		String input = inputs.get(node);
+		return input.isEmpty() ? null : input;
+	}
+
+	/**
+	 * Whether the file starts like a CSR file
+	 */
+	public static boolean matches(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Maps a file read-only. Nothing is copied: the topology reads straight from
+	 * the mapping, which stays valid after the channel is closed.
+	 */
+	public static CsrFile map(Path file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + ": too large to map (" + channel.size() + " bytes)");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + ": not a CSR topology file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(file + ": unsupported version " + buffer.getInt(4));
+		}
+		int nodes = buffer.getInt(8);
+		int slots = buffer.getInt(12);
+		int features = buffer.getInt(16);
+		try {
+			Reader in = new Reader(buffer, HEADER);
+			IntBuffer offsets = in.ints(nodes + 1);
+			IntBuffer targets = in.ints(slots);
+			IntBuffer reverse = in.ints(slots);
+			IntBuffer labels = (features & LABELS) != 0 ? in.ints(slots) : null;
+			ByteBuffer flags = in.bytes(slots);
+			StringTable dictionary = (features & LABELS) != 0 ? in.strings().decoded() : null;
+			StringTable names = (features & NAMES) != 0 ? in.strings() : null;
+			StringTable inputs = (features & INPUTS) != 0 ? in.strings() : null;
+			return new CsrFile(new Topology(nodes, offsets, targets, reverse, flags, names, labels, dictionary), inputs);
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException(file + ": corrupt CSR topology file", e);
+		}
+	}
+
+	private static final class Reader {
+		private final ByteBuffer buffer;
+		private int position;
+
+		Reader(ByteBuffer buffer, int position) {
+			this.buffer = buffer;
+			this.position = position;
+		}
+
+		IntBuffer ints(int count) {
+			ByteBuffer slice = bytes(4 * count);
+			return slice.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+
+		ByteBuffer bytes(int count) {
+			ByteBuffer slice = buffer.slice(position, count);
+			position += (count + 3) & ~3;
+			return slice;
+		}
+
+		StringTable strings() {
+			int count = buffer.getInt(position);
+			position += 4;
+			IntBuffer offsets = ints(count + 1);
+			return new StringTable(offsets, bytes(offsets.get(count)));
+		}
+	}
+
+	/**
+	 * Writes a topology and (optionally) its inputs in this format
+	 */
+	public static void write(Topology topology, IntFunction<String> inputs, Path file) throws IOException {
+		StringTable names = topology.names();
+		StringTable dictionary = topology.labelDictionary();
+		String[] labels = null;
+		if (dictionary != null) {
+			labels = new String[dictionary.size()];
+			for (int i = 0; i < labels.length; i++) {
+				labels[i] = dictionary.get(i);
+			}
+		}
+		try (Output out = create(file, topology.size(), topology.slots(), labels, names != null ? names::get : null,
+				inputs)) {
+			int nodes = topology.size();
+			for (int v = 0; v < nodes; v++) {
+				out.offsets.put(v, topology.firstSlot(v));
+			}
+			out.offsets.put(nodes, topology.slots());
+			IntBuffer portLabels = topology.portLabels();
+			for (int s = 0; s < topology.slots(); s++) {
+				out.targets.put(s, topology.target(s));
+				out.reverse.put(s, topology.reversePort(s));
+				out.flags.put(s, topology.flags(s));
+				if (portLabels != null) {
+					out.labels.put(s, portLabels.get(s));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a file of {@code nodes} nodes and {@code slots} port slots whose
+	 * arrays the caller fills in place. Port labels are stored only if a label
+	 * dictionary is given; names and inputs, if given, are written on close.
+	 */
+	public static Output create(Path file, int nodes, int slots, String[] labelDictionary, IntFunction<String> names,
+			IntFunction<String> inputs) throws IOException {
+		return new Output(file, nodes, slots, labelDictionary, names, inputs);
+	}
+
+	/**
+	 * A CSR file being filled through a writable mapping. Different threads may
+	 * write different indices at the same time (absolute puts only).
+	 */
+	public static final class Output implements Closeable {
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private final int nodes;
+		private final String[] labelDictionary;
+		private final IntFunction<String> names;
+		private final IntFunction<String> inputs;
+
+		final IntBuffer offsets;
+		final IntBuffer targets;
+		final IntBuffer reverse;
+		final IntBuffer labels;
+		final ByteBuffer flags;
+
+		private Output(Path file, int nodes, int slots, String[] labelDictionary, IntFunction<String> names,
+				IntFunction<String> inputs) throws IOException {
+			this.nodes = nodes;
+			this.labelDictionary = labelDictionary;
+			this.names = names;
+			this.inputs = inputs;
+			long size = HEADER + 4L * (nodes + 1) + 8L * slots + (labelDictionary != null ? 4L * slots : 0)
+					+ ((slots + 3) & ~3L);
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + ": too large to map (" + size + " bytes)");
+			}
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			int features = (labelDictionary != null ? LABELS : 0) | (names != null ? NAMES : 0)
+					| (inputs != null ? INPUTS : 0);
+			buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, nodes).putInt(12, slots).putInt(16, features)
+					.putInt(20, 0);
+			Reader sections = new Reader(buffer, HEADER);
+			offsets = sections.ints(nodes + 1);
+			targets = sections.ints(slots);
+			reverse = sections.ints(slots);
+			labels = labelDictionary != null ? sections.ints(slots) : null;
+			flags = sections.bytes(slots);
+		}
+
+		public IntBuffer offsets() {
+			return offsets;
+		}
+
+		public IntBuffer targets() {
+			return targets;
+		}
+
+		public IntBuffer reverse() {
+			return reverse;
+		}
+
+		/**
+		 * Codes into the label dictionary, {@code null} without one
+		 */
+		public IntBuffer labels() {
+			return labels;
+		}
+
+		public ByteBuffer flags() {
+			return flags;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				buffer.force();
+				Writer out = new Writer(channel, buffer.limit());
+				if (labelDictionary != null) {
+					out.strings(labelDictionary.length, i -> labelDictionary[i]);
+				}
+				if (names != null) {
+					out.strings(nodes, names);
+				}
+				if (inputs != null) {
+					out.strings(nodes, node -> {
+						String input = inputs.apply(node);
+						return input != null ? input : "";
+					});
+				}
+				out.flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Buffered little endian output
+	 */
+	private static final class Writer {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+		private long written;
+
+		Writer(FileChannel channel, long position) {
+			this.channel = channel;
+			this.written = position;
+		}
+
+		void putInt(int value) throws IOException {
+			if (buffer.remaining() < 4) {
+				drain();
+			}
+			buffer.putInt(value);
+		}
+
+		void putByte(byte value) throws IOException {
+			if (!buffer.hasRemaining()) {
+				drain();
+			}
+			buffer.put(value);
+		}
+
+		void put(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				if (!buffer.hasRemaining()) {
+					drain();
+				}
+				int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, chunk);
+				offset += chunk;
+			}
+		}
+
+		void align() throws IOException {
+			while (((written + buffer.position()) & 3) != 0) {
+				putByte((byte) 0);
+			}
+		}
+
+		/**
+		 * Offsets go before the bytes, so the strings are encoded twice rather
+		 * than kept around
+		 */
+		void strings(int count, IntFunction<String> strings) throws IOException {
+			putInt(count);
+			int offset = 0;
+			putInt(0);
+			for (int i = 0; i < count; i++) {
+				offset += strings.apply(i).getBytes(StandardCharsets.UTF_8).length;
+				putInt(offset);
+			}
+			for (int i = 0; i < count; i++) {
+				put(strings.apply(i).getBytes(StandardCharsets.UTF_8));
+			}
+			align();
+		}
+
+		void flush() throws IOException {
+			drain();
+		}
+
+		private void drain() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				written += channel.write(buffer, written);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package dada.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain text topology format, one statement per line:
+ *
+ * <pre>
+ * # comment
+ * a b        bidirectional link between a and b
+ * a > b      unidirectional link from a to b
+ * a = 42     user input of a
+ * </pre>
+ *
+ * Nodes are created in order of first appearance.
+ */
+public class EdgeList {
+
+	private final Topology topology;
+	private final String[] inputs;
+
+	private EdgeList(Topology topology, String[] inputs) {
+		this.topology = topology;
+		this.inputs = inputs;
+	}
+
+	public Topology topology() {
+		return topology;
+	}
+
+	/**
+	 * User inputs by node index, entries are {@code null} when not given
+	 */
+	public String[] inputs() {
+		return inputs;
+	}
+
+	public static EdgeList read(Path file) throws IOException {
+		Topology.Builder builder = new Topology.Builder(0);
+		Map<String, Integer> nodes = new HashMap<>();
+		Map<Integer, String> values = new HashMap<>();
+		int lineNumber = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				int comment = line.indexOf('#');
+				if (comment >= 0) {
+					line = line.substring(0, comment);
+				}
+				String[] tokens = line.trim().split("\\s+");
+				if (tokens.length == 1 && tokens[0].isEmpty()) {
+					continue;
+				}
+				if (tokens.length == 2) {
+					builder.link(node(builder, nodes, tokens[0]), node(builder, nodes, tokens[1]));
+				} else if (tokens.length == 3 && tokens[1].equals(">")) {
+					builder.arc(node(builder, nodes, tokens[0]), node(builder, nodes, tokens[2]));
+				} else if (tokens.length == 3 && tokens[1].equals("=")) {
+					values.put(node(builder, nodes, tokens[0]), tokens[2]);
+				} else {
+					throw new IOException(file + ":" + lineNumber + ": cannot parse '" + line.trim() + "'");
+				}
+			}
+		}
+		Topology topology = builder.build();
+		String[] inputs = new String[topology.size()];
+		values.forEach((node, value) -> inputs[node] = value);
+		return new EdgeList(topology, inputs);
+	}
+
+	private static int node(Topology.Builder builder, Map<String, Integer> nodes, String name) {
+		return nodes.computeIfAbsent(name, builder::addNode);
+	}
+
+	/**
+	 * Writes a topology and (optionally) its inputs in this format
+	 */
+	public static void write(Topology topology, String[] inputs, Path file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		for (int u = 0; u < topology.size(); u++) {
+			for (int port = 0; port < topology.degree(u); port++) {
+				int slot = topology.slot(u, port);
+				int v = topology.target(slot);
+				if (topology.isOut(slot) && topology.isIn(slot)) {
+					if (u < v) {
+						lines.add(topology.name(u) + " " + topology.name(v));
+					}
+				} else if (topology.isOut(slot)) {
+					lines.add(topology.name(u) + " > " + topology.name(v));
+				}
+			}
+			if (inputs != null && inputs[u] != null) {
+				lines.add(topology.name(u) + " = " + inputs[u]);
+			}
+		}
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+}
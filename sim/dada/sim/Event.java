@@ -0,0 +1,33 @@
+package dada.sim;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Something that happens to a node at a given simulated time
+ */
+final class Event {
+	static final byte INIT = 0;
+	static final byte DELIVER = 1;
+	static final byte ALARM = 2;
+	static final byte ARRIVE = 3;
+
+	long time;
+	long seq;
+	byte kind;
+	int node;
+	int port;
+	IMessage message;
+	Object subject;
+
+	Event(long time, byte kind, int node, int port, IMessage message) {
+		this.time = time;
+		this.kind = kind;
+		this.node = node;
+		this.port = port;
+		this.message = message;
+	}
+
+	boolean before(Event other) {
+		return time < other.time || (time == other.time && seq < other.seq);
+	}
+}
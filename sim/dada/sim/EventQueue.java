@@ -0,0 +1,76 @@
+package dada.sim;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of events ordered by (time, insertion order). Ties are broken
+ * by insertion order so that runs are deterministic and constant-delay links
+ * are FIFO without any extra bookkeeping.
+ */
+final class EventQueue {
+	private Event[] heap = new Event[1024];
+	private int size;
+	private long seq;
+
+	void add(Event e) {
+		e.seq = seq++;
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			Event p = heap[parent];
+			if (!e.before(p)) {
+				break;
+			}
+			heap[i] = p;
+			i = parent;
+		}
+		heap[i] = e;
+	}
+
+	Event poll() {
+		if (size == 0) {
+			return null;
+		}
+		Event top = heap[0];
+		Event last = heap[--size];
+		heap[size] = null;
+		if (size > 0) {
+			int i = 0;
+			int half = size >>> 1;
+			while (i < half) {
+				int child = 2 * i + 1;
+				Event c = heap[child];
+				int right = child + 1;
+				if (right < size && heap[right].before(c)) {
+					child = right;
+					c = heap[child];
+				}
+				if (!c.before(last)) {
+					break;
+				}
+				heap[i] = c;
+				i = child;
+			}
+			heap[i] = last;
+		}
+		return top;
+	}
+
+	/**
+	 * The next event, left in the queue, {@code null} if there is none
+	 */
+	Event peek() {
+		return size > 0 ? heap[0] : null;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,104 @@
+package dada.sim;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Command line front end to {@link Generator}:
+ *
+ * <pre>
+ * java dada.sim.Generate [options] &lt;family&gt; &lt;parameters&gt;... &lt;output.csr&gt;
+ *
+ *   ring n | uring n | hypercube dimensions | mesh rows columns
+ *   kary n k | tree n | gnm n m | powerlaw n m gamma
+ *
+ *   --seed=n       seed of the random families and values
+ *   --connected    (gnm, powerlaw) lay a random spanning tree first
+ *   --values       give nodes distinct values 0..n-1 in random order as input
+ * </pre>
+ */
+public class Generate {
+
+	public static void main(String[] args) throws Exception {
+		long seed = 1;
+		boolean connected = false;
+		boolean values = false;
+		List<String> positional = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("--seed=")) {
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			} else if (arg.equals("--connected")) {
+				connected = true;
+			} else if (arg.equals("--values")) {
+				values = true;
+			} else {
+				positional.add(arg);
+			}
+		}
+		if (positional.size() < 3) {
+			System.err.println("Usage: Generate [options] <family> <parameters>... <output.csr>");
+			System.exit(2);
+		}
+
+		long start = System.currentTimeMillis();
+		Generator generator = generator(positional.subList(0, positional.size() - 1), seed, connected);
+		IntFunction<String> inputs = values ? permutation(generator.nodes(), seed) : null;
+		generator.write(Paths.get(positional.get(positional.size() - 1)), inputs);
+		long finish = System.currentTimeMillis();
+		System.out.println(generator.nodes() + " nodes, " + generator.slots() + " port slots");
+		System.out.println("TimeElapsed: " + (finish - start) + " ms");
+	}
+
+	static Generator generator(List<String> spec, long seed, boolean connected) {
+		String family = spec.get(0);
+		switch (family) {
+		case "ring":
+			return Generator.ring(intArg(spec, 1), true);
+		case "uring":
+			return Generator.ring(intArg(spec, 1), false);
+		case "hypercube":
+			return Generator.hypercube(intArg(spec, 1));
+		case "mesh":
+			return Generator.mesh(intArg(spec, 1), intArg(spec, 2));
+		case "kary":
+			return Generator.karyTree(intArg(spec, 1), intArg(spec, 2));
+		case "tree":
+			return Generator.tree(intArg(spec, 1), seed);
+		case "gnm":
+			return Generator.erdosRenyi(intArg(spec, 1), Long.parseLong(spec.get(2)), seed, connected);
+		case "powerlaw":
+			return Generator.powerLaw(intArg(spec, 1), Long.parseLong(spec.get(2)), Double.parseDouble(spec.get(3)),
+					seed, connected);
+		default:
+			throw new IllegalArgumentException("Unknown topology family " + family);
+		}
+	}
+
+	private static int intArg(List<String> spec, int index) {
+		if (index >= spec.size()) {
+			throw new IllegalArgumentException(spec.get(0) + " needs " + index + " parameter(s)");
+		}
+		return Integer.parseInt(spec.get(index));
+	}
+
+	/**
+	 * 0..n-1 shuffled, as decimal strings
+	 */
+	private static IntFunction<String> permutation(int n, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int t = values[i];
+			values[i] = values[j];
+			values[j] = t;
+		}
+		return node -> Integer.toString(values[node]);
+	}
+}
@@ -0,0 +1,453 @@
+package dada.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Topology families at scale, generated straight into CSR arrays: either on
+ * the heap ({@link #build()}) or into a mapped {@link CsrFile}
+ * ({@link #write(Path)}), without going through {@link Topology.Builder}.
+ *
+ * Regular families compute every slot in closed form and fill nodes in
+ * parallel. Random families draw their links in parallel chunks, each with its
+ * own split of the seeded generator, so the result only depends on the seed.
+ * Nodes are unnamed ({@code "n" + index}) and ports are named after the
+ * neighbour unless noted otherwise.
+ */
+public abstract class Generator {
+
+	static final int CHUNK = 1 << 16;
+
+	private static final byte BOTH = Topology.IN | Topology.OUT;
+
+	final int nodes;
+
+	Generator(int nodes) {
+		this.nodes = nodes;
+	}
+
+	public int nodes() {
+		return nodes;
+	}
+
+	public abstract int slots();
+
+	/**
+	 * Port label dictionary, {@code null} when ports are named after the
+	 * neighbour
+	 */
+	String[] labels() {
+		return null;
+	}
+
+	/**
+	 * Fills the CSR arrays, {@code labels} only if there is a dictionary
+	 */
+	abstract void fill(IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, IntBuffer labels);
+
+	public Topology build() {
+		int slots = slots();
+		String[] dictionary = labels();
+		int[] offsets = new int[nodes + 1];
+		int[] targets = new int[slots];
+		int[] reverse = new int[slots];
+		byte[] flags = new byte[slots];
+		int[] labels = dictionary != null ? new int[slots] : null;
+		fill(IntBuffer.wrap(offsets), IntBuffer.wrap(targets), IntBuffer.wrap(reverse), ByteBuffer.wrap(flags),
+				labels != null ? IntBuffer.wrap(labels) : null);
+		return new Topology(nodes, offsets, targets, reverse, flags, null, labels, dictionary);
+	}
+
+	public void write(Path file) throws IOException {
+		write(file, null);
+	}
+
+	/**
+	 * Writes the topology, with the given user inputs, as a CSR file
+	 */
+	public void write(Path file, IntFunction<String> inputs) throws IOException {
+		try (CsrFile.Output out = CsrFile.create(file, nodes, slots(), labels(), null, inputs)) {
+			fill(out.offsets, out.targets, out.reverse, out.flags, out.labels);
+		}
+	}
+
+	/**
+	 * Runs {@code body} over {@code [0, count)} in parallel chunks
+	 */
+	static void forChunks(long count, ChunkBody body) {
+		int chunks = (int) ((count + CHUNK - 1) / CHUNK);
+		IntStream.range(0, chunks).parallel().forEach(c -> {
+			long from = (long) c * CHUNK;
+			body.run(c, from, Math.min(count, from + CHUNK));
+		});
+	}
+
+	interface ChunkBody {
+		void run(int chunk, long from, long to);
+	}
+
+	/**
+	 * Checks that a family's slot count, computed in long, fits the int CSR
+	 * offsets
+	 */
+	static int slotCount(long slots) {
+		if (slots > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(slots + " slots do not fit int CSR offsets");
+		}
+		return (int) slots;
+	}
+
+	/*
+	 * Families
+	 */
+
+	/**
+	 * Ring of {@code n >= 3} nodes. Port 0 of node v leads to v - 1 and port 1 to
+	 * v + 1; on a unidirectional ring port 0 only receives and port 1 only sends.
+	 */
+	public static Generator ring(int n, boolean bidirectional) {
+		if (n < 3) {
+			throw new IllegalArgumentException("A ring needs at least 3 nodes");
+		}
+		int slots = slotCount(2L * n);
+		return new Generator(n) {
+			@Override
+			public int slots() {
+				return slots;
+			}
+
+			@Override
+			void fill(IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, IntBuffer labels) {
+				forChunks(n + 1, (c, from, to) -> {
+					for (int v = (int) from; v < to; v++) {
+						offsets.put(v, 2 * v);
+						if (v == n) {
+							continue;
+						}
+						targets.put(2 * v, v == 0 ? n - 1 : v - 1);
+						targets.put(2 * v + 1, v == n - 1 ? 0 : v + 1);
+						reverse.put(2 * v, 1);
+						reverse.put(2 * v + 1, 0);
+						flags.put(2 * v, bidirectional ? BOTH : Topology.IN);
+						flags.put(2 * v + 1, bidirectional ? BOTH : Topology.OUT);
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Hypercube of {@code 2^dimensions} nodes. Port k crosses dimension k and is
+	 * labelled {@code "d" + k} with two digits, so that lexicographic order of
+	 * port names is dimension order, as HyperFlood expects. At most 26
+	 * dimensions, beyond which the slots overflow the int CSR offsets.
+	 */
+	public static Generator hypercube(int dimensions) {
+		if (dimensions < 1 || dimensions > 30) {
+			throw new IllegalArgumentException("Dimensions must be in [1, 30]");
+		}
+		int slots = slotCount((1L << dimensions) * dimensions);
+		return new Generator(1 << dimensions) {
+			@Override
+			public int slots() {
+				return slots;
+			}
+
+			@Override
+			String[] labels() {
+				String[] labels = new String[dimensions];
+				for (int d = 0; d < dimensions; d++) {
+					labels[d] = String.format("d%02d", d);
+				}
+				return labels;
+			}
+
+			@Override
+			void fill(IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, IntBuffer labels) {
+				forChunks(nodes + 1, (c, from, to) -> {
+					for (int v = (int) from; v < to; v++) {
+						offsets.put(v, v * dimensions);
+						if (v == nodes) {
+							continue;
+						}
+						for (int d = 0; d < dimensions; d++) {
+							int s = v * dimensions + d;
+							targets.put(s, v ^ (1 << d));
+							reverse.put(s, d);
+							flags.put(s, BOTH);
+							labels.put(s, d);
+						}
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * {@code rows x columns} grid, node {@code r * columns + c}. Ports are
+	 * labelled {@code north}, {@code west}, {@code east}, {@code south} and
+	 * appear in that order (border nodes lack some).
+	 */
+	public static Generator mesh(int rows, int columns) {
+		if (rows < 1 || columns < 1 || (long) rows * columns > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Bad mesh size " + rows + "x" + columns);
+		}
+		int slots = slotCount(2 * ((long) rows * (columns - 1) + (long) columns * (rows - 1)));
+		return new Generator(rows * columns) {
+			// north, west, east, south
+			private final int[] dr = { -1, 0, 0, 1 };
+			private final int[] dc = { 0, -1, 1, 0 };
+
+			@Override
+			public int slots() {
+				return slots;
+			}
+
+			@Override
+			String[] labels() {
+				return new String[] { "north", "west", "east", "south" };
+			}
+
+			@Override
+			void fill(IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, IntBuffer labels) {
+				int[] rowStart = new int[rows + 1];
+				for (int r = 0; r < rows; r++) {
+					rowStart[r + 1] = rowStart[r] + rowSlots(r);
+				}
+				offsets.put(nodes, rowStart[rows]);
+				IntStream.range(0, rows).parallel().forEach(r -> {
+					int s = rowStart[r];
+					for (int c = 0; c < columns; c++) {
+						offsets.put(r * columns + c, s);
+						for (int p = 0; p < 4; p++) {
+							int nr = r + dr[p];
+							int nc = c + dc[p];
+							if (nr < 0 || nr >= rows || nc < 0 || nc >= columns) {
+								continue;
+							}
+							targets.put(s, nr * columns + nc);
+							reverse.put(s, port(nr, nc, 3 - p));
+							flags.put(s, BOTH);
+							labels.put(s, p);
+							s++;
+						}
+					}
+				});
+			}
+
+			private int rowSlots(int r) {
+				return (r > 0 ? columns : 0) + (r < rows - 1 ? columns : 0) + 2 * (columns - 1);
+			}
+
+			/**
+			 * Local index of port p (in north, west, east, south order) at (r, c)
+			 */
+			private int port(int r, int c, int p) {
+				int index = 0;
+				for (int k = 0; k < p; k++) {
+					int nr = r + dr[k];
+					int nc = c + dc[k];
+					if (nr >= 0 && nr < rows && nc >= 0 && nc < columns) {
+						index++;
+					}
+				}
+				return index;
+			}
+		};
+	}
+
+	/**
+	 * Complete k-ary tree, node v hangs from (v - 1) / k. Port 0 leads to the
+	 * parent (but at the root), the children follow in order.
+	 */
+	public static Generator karyTree(int n, int k) {
+		if (n < 1 || k < 1) {
+			throw new IllegalArgumentException("Bad tree size " + n + " or arity " + k);
+		}
+		int slots = slotCount(2L * (n - 1));
+		return new Generator(n) {
+			@Override
+			public int slots() {
+				return slots;
+			}
+
+			private int children(int v) {
+				long first = (long) v * k + 1;
+				return (int) Math.max(0, Math.min(k, n - first));
+			}
+
+			/**
+			 * Slots of the nodes before v: every earlier node but the root has a
+			 * parent port, and the children of nodes before v are nodes 1..min(n-1,
+			 * v*k)
+			 */
+			private int offset(int v) {
+				return (v > 0 ? v - 1 : 0) + (int) Math.min(n - 1L, (long) v * k);
+			}
+
+			@Override
+			void fill(IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, IntBuffer labels) {
+				offsets.put(n, slots());
+				forChunks(n, (c, from, to) -> {
+					for (int v = (int) from; v < to; v++) {
+						int s = offset(v);
+						offsets.put(v, s);
+						if (v > 0) {
+							int parent = (v - 1) / k;
+							targets.put(s, parent);
+							reverse.put(s, (parent > 0 ? 1 : 0) + (v - 1) % k);
+							flags.put(s++, BOTH);
+						}
+						for (int i = 0, children = children(v); i < children; i++) {
+							targets.put(s, v * k + 1 + i);
+							reverse.put(s, 0);
+							flags.put(s++, BOTH);
+						}
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Random recursive tree: node v hangs from a uniformly chosen earlier node
+	 */
+	public static Generator tree(int n, long seed) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Bad tree size " + n);
+		}
+		long[] links = new long[n - 1];
+		SplittableRandom[] randoms = splits(seed, n);
+		forChunks(n - 1, (c, from, to) -> {
+			SplittableRandom random = randoms[c];
+			for (long i = from; i < to; i++) {
+				int v = (int) i + 1;
+				links[(int) i] = link(random.nextInt(v), v);
+			}
+		});
+		return fromLinks(n, links, links.length);
+	}
+
+	/**
+	 * G(n, m): {@code m} links drawn uniformly, self loops and parallel links
+	 * dropped. With {@code connected} a random recursive tree is laid first, so
+	 * that (n - 1) of the m links form a spanning tree.
+	 */
+	public static Generator erdosRenyi(int n, long m, long seed, boolean connected) {
+		return sampled(n, m, seed, connected, (random, bound) -> random.nextInt(bound));
+	}
+
+	/**
+	 * Chung-Lu graph with {@code m} links whose expected degrees follow a power
+	 * law of exponent {@code gamma > 2}: node i has weight proportional to
+	 * {@code (i + 1)^(-1 / (gamma - 1))}, so the hubs are the first nodes.
+	 * Endpoints are drawn by inverting the continuous weight distribution.
+	 */
+	public static Generator powerLaw(int n, long m, double gamma, long seed, boolean connected) {
+		if (!(gamma > 2)) {
+			throw new IllegalArgumentException("Power law exponent must exceed 2");
+		}
+		double exponent = (gamma - 1) / (gamma - 2);
+		return sampled(n, m, seed, connected,
+				(random, bound) -> (int) Math.min(bound - 1, bound * Math.pow(random.nextDouble(), exponent)));
+	}
+
+	interface Endpoint {
+		int draw(SplittableRandom random, int bound);
+	}
+
+	private static Generator sampled(int n, long m, long seed, boolean connected, Endpoint endpoint) {
+		if (n < 2 || m < 0 || (connected && m < n - 1)) {
+			throw new IllegalArgumentException("Bad graph size n=" + n + " m=" + m);
+		}
+		if (m > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("Too many links: " + m);
+		}
+		long[] links = new long[(int) m];
+		int backbone = connected ? n - 1 : 0;
+		SplittableRandom[] randoms = splits(seed, m);
+		forChunks(m, (c, from, to) -> {
+			SplittableRandom random = randoms[c];
+			for (long i = from; i < to; i++) {
+				int u;
+				int v;
+				if (i < backbone) {
+					v = (int) i + 1;
+					u = random.nextInt(v);
+				} else {
+					u = endpoint.draw(random, n);
+					v = endpoint.draw(random, n);
+				}
+				links[(int) i] = u != v ? link(u, v) : -1;
+			}
+		});
+		Arrays.parallelSort(links);
+		int count = 0;
+		for (int i = 0; i < links.length; i++) {
+			if (links[i] >= 0 && (count == 0 || links[count - 1] != links[i])) {
+				links[count++] = links[i];
+			}
+		}
+		return fromLinks(n, links, count);
+	}
+
+	private static SplittableRandom[] splits(long seed, long count) {
+		SplittableRandom random = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[(int) ((count + CHUNK - 1) / CHUNK)];
+		for (int i = 0; i < randoms.length; i++) {
+			randoms[i] = random.split();
+		}
+		return randoms;
+	}
+
+	private static long link(int u, int v) {
+		return u < v ? ((long) u << 32) | v : ((long) v << 32) | u;
+	}
+
+	/**
+	 * Undirected graph out of {@code count} distinct packed links. Ports are in
+	 * increasing neighbour order when the links are sorted.
+	 */
+	private static Generator fromLinks(int n, long[] links, int count) {
+		int slots = slotCount(2L * count);
+		return new Generator(n) {
+			@Override
+			public int slots() {
+				return slots;
+			}
+
+			@Override
+			void fill(IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, IntBuffer labels) {
+				int[] next = new int[n + 1];
+				for (int i = 0; i < count; i++) {
+					next[(int) (links[i] >>> 32) + 1]++;
+					next[(int) links[i] + 1]++;
+				}
+				for (int v = 0; v < n; v++) {
+					next[v + 1] += next[v];
+				}
+				for (int v = 0; v <= n; v++) {
+					offsets.put(v, next[v]);
+				}
+				for (int i = 0; i < count; i++) {
+					int u = (int) (links[i] >>> 32);
+					int v = (int) links[i];
+					int su = next[u]++;
+					int sv = next[v]++;
+					targets.put(su, v);
+					targets.put(sv, u);
+					reverse.put(su, sv - offsets.get(v));
+					reverse.put(sv, su - offsets.get(u));
+					flags.put(su, BOTH);
+					flags.put(sv, BOTH);
+				}
+			}
+		};
+	}
+}
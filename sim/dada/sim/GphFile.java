@@ -0,0 +1,120 @@
+package dada.sim;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dada.sim.SerializedStream.Instance;
+
+/**
+ * Reader for the {@code .gph} files saved by the DisJ editor, without the
+ * plugin on the class path.
+ *
+ * A {@code .gph} file is a serialized {@code GraphElement}. Its graph holds the
+ * nodes (name, user input, initiator flag and a map from port label to edge)
+ * but the edges do not know their ends; those come from the editor's link
+ * elements ({@code sId}, {@code tId}, uni- or bidirectional by class).
+ */
+public class GphFile {
+
+	private static final String UNI_LINK = "distributed.plugin.ui.models.UniLinkElement";
+
+	private final Topology topology;
+	private final String[] inputs;
+	private final String[] initiators;
+
+	private GphFile(Topology topology, String[] inputs, String[] initiators) {
+		this.topology = topology;
+		this.inputs = inputs;
+		this.initiators = initiators;
+	}
+
+	public Topology topology() {
+		return topology;
+	}
+
+	/**
+	 * User inputs by node index, entries are {@code null} when not given
+	 */
+	public String[] inputs() {
+		return inputs;
+	}
+
+	/**
+	 * Names of the nodes marked as initiators in the editor
+	 */
+	public String[] initiators() {
+		return initiators;
+	}
+
+	public static GphFile read(Path file) throws IOException {
+		Object root;
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			root = SerializedStream.read(in);
+		}
+		try {
+			return read((Instance) root);
+		} catch (ClassCastException | NullPointerException e) {
+			throw new IOException(file + ": not a DisJ graph", e);
+		}
+	}
+
+	private static GphFile read(Instance element) throws IOException {
+		Instance graph = (Instance) element.get("graph");
+		Topology.Builder builder = new Topology.Builder(0);
+		Map<String, Integer> index = new HashMap<>();
+		// per node, edge id -> port label
+		List<Map<String, String>> ports = new ArrayList<>();
+		List<String> inputs = new ArrayList<>();
+		List<String> initiators = new ArrayList<>();
+
+		List<Object> nodes = map(graph.get("nodes"));
+		for (int i = 0; i < nodes.size(); i += 2) {
+			Instance node = (Instance) nodes.get(i + 1);
+			String name = (String) node.get("name");
+			index.put((String) nodes.get(i), builder.addNode(name));
+			Map<String, String> labels = new HashMap<>();
+			List<Object> edges = map(node.get("edges"));
+			for (int k = 0; k < edges.size(); k += 2) {
+				labels.put((String) ((Instance) edges.get(k + 1)).get("edgeId"), (String) edges.get(k));
+			}
+			ports.add(labels);
+			String input = (String) node.get("userInput");
+			inputs.add(input == null || input.isEmpty() ? null : input);
+			if (Boolean.TRUE.equals(node.get("isInit"))) {
+				initiators.add(name);
+			}
+		}
+
+		for (Object o : ((Instance) element.get("linkElements")).objects()) {
+			Instance link = (Instance) o;
+			String edge = (String) link.get("eId");
+			Integer u = index.get(link.get("sId"));
+			Integer v = index.get(link.get("tId"));
+			if (u == null || v == null) {
+				throw new IOException("Link " + edge + " refers to an unknown node");
+			}
+			String uPort = ports.get(u).get(edge);
+			String vPort = ports.get(v).get(edge);
+			if (link.className.equals(UNI_LINK)) {
+				builder.arc(u, v, uPort, vPort);
+			} else {
+				builder.link(u, v, uPort, vPort);
+			}
+		}
+		return new GphFile(builder.build(), inputs.toArray(new String[0]), initiators.toArray(new String[0]));
+	}
+
+	/**
+	 * Keys and values, alternating, of a serialized map
+	 */
+	private static List<Object> map(Object map) {
+		return ((Instance) map).objects();
+	}
+}
@@ -0,0 +1,31 @@
+package dada.sim;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * What an {@link distributed.plugin.runtime.engine.Entity} needs from the
+ * engine that runs it. Nodes and ports are dense indexes into the
+ * {@link Topology}.
+ */
+public interface Kernel {
+
+	Topology topology();
+
+	String userInput(int node);
+
+	/**
+	 * Sends a message from {@code node} through the first {@code count} ports in
+	 * {@code ports}. The array is owned by the caller and may be reused as soon as
+	 * this method returns.
+	 */
+	void send(int node, int[] ports, int count, IMessage message);
+
+	/**
+	 * Called by {@code become} whenever an entity changes state
+	 */
+	void transition(int node, int from, int to);
+
+	void setAlarm(int node, int delay);
+
+	void print(int node, String text);
+}
@@ -0,0 +1,34 @@
+package dada.sim;
+
+import java.util.SplittableRandom;
+
+/**
+ * Transmission delay of a message sent through a port slot. Delays are at
+ * least 1; the engines keep links FIFO whatever the delays are.
+ */
+@FunctionalInterface
+public interface LinkDelay {
+
+	LinkDelay UNIT = slot -> 1;
+
+	long delay(int slot);
+
+	/**
+	 * Whether every link always takes the same time (no FIFO bookkeeping needed)
+	 */
+	default boolean isConstant() {
+		return this == UNIT;
+	}
+
+	/**
+	 * Uniformly distributed delays in {@code [min, max]}, reproducible for a
+	 * given seed
+	 */
+	static LinkDelay uniform(long seed, long min, long max) {
+		if (min < 1 || max < min) {
+			throw new IllegalArgumentException("Invalid delay range [" + min + ", " + max + "]");
+		}
+		SplittableRandom random = new SplittableRandom(seed);
+		return slot -> random.nextLong(min, max + 1);
+	}
+}
@@ -0,0 +1,35 @@
+package dada.sim;
+
+import java.io.Serializable;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Plain {@link IMessage} implementation used by the headless engines
+ */
+public class Message implements IMessage, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String label;
+	private final Object content;
+
+	public Message(String label, Object content) {
+		this.label = label;
+		this.content = content;
+	}
+
+	@Override
+	public String getLabel() {
+		return label;
+	}
+
+	@Override
+	public Object getContent() {
+		return content;
+	}
+
+	@Override
+	public String toString() {
+		return label + "[" + content + "]";
+	}
+}
@@ -0,0 +1,66 @@
+package dada.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+/**
+ * A topology with the user inputs of its nodes, read from whichever format the
+ * file is in: {@link CsrFile} (mapped, not copied), DisJ {@link GphFile} or
+ * {@link EdgeList} text.
+ */
+public final class Network {
+
+	private static final String[] NONE = new String[0];
+
+	private final Topology topology;
+	private final IntFunction<String> inputs;
+	private final String[] initiators;
+
+	private Network(Topology topology, IntFunction<String> inputs, String[] initiators) {
+		this.topology = topology;
+		this.inputs = inputs;
+		this.initiators = initiators;
+	}
+
+	public Topology topology() {
+		return topology;
+	}
+
+	/**
+	 * User inputs by node index, {@code null} when not given
+	 */
+	public IntFunction<String> inputs() {
+		return inputs;
+	}
+
+	/**
+	 * Initiators recorded in the file, only {@code .gph} files have them
+	 */
+	public String[] initiators() {
+		return initiators;
+	}
+
+	public static Network open(Path file) throws IOException {
+		if (CsrFile.matches(file)) {
+			CsrFile csr = CsrFile.map(file);
+			return new Network(csr.topology(), csr::input, NONE);
+		}
+		if (isSerialized(file)) {
+			GphFile gph = GphFile.read(file);
+			String[] inputs = gph.inputs();
+			return new Network(gph.topology(), node -> inputs[node], gph.initiators());
+		}
+		EdgeList edges = EdgeList.read(file);
+		String[] inputs = edges.inputs();
+		return new Network(edges.topology(), node -> inputs[node], NONE);
+	}
+
+	private static boolean isSerialized(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return in.read() == 0xAC && in.read() == 0xED;
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package dada.sim;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import distributed.plugin.runtime.IMessage;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Multi-core engine for message passing protocols.
+ *
+ * Every entity owns a mailbox. Sending appends to the target mailbox and, if
+ * the target is not already scheduled, submits a drain task to a work-stealing
+ * {@link ForkJoinPool}. A drain task processes a bounded batch of messages and
+ * reschedules itself if more arrived, so an entity is never run by two threads
+ * at once and sees the messages from each neighbour in FIFO order: the same
+ * guarantees protocols get from {@link Simulator}.
+ *
+ * There is no global clock: the execution is asynchronous and alarms ring as
+ * soon as the entity is scheduled again. The run is over once the pool is
+ * quiescent, which needs no shared counter on the hot path.
+ */
+public class ParallelSimulator implements Kernel {
+
+	// messages processed per drain before giving other entities a chance
+	private static final int BATCH = 256;
+
+	private static final byte INIT = 0;
+	private static final byte DELIVER = 1;
+	private static final byte ALARM = 2;
+
+	private static final class Delivery {
+		final byte kind;
+		final int port;
+		final IMessage message;
+
+		Delivery(byte kind, int port, IMessage message) {
+			this.kind = kind;
+			this.port = port;
+			this.message = message;
+		}
+	}
+
+	private final class Drain extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int node;
+
+		Drain(int node) {
+			this.node = node;
+		}
+
+		@Override
+		protected void compute() {
+			ConcurrentLinkedQueue<Delivery> mailbox = mailboxes.get(node);
+			Entity entity = entities[node];
+			try {
+				for (int i = 0; i < BATCH; i++) {
+					Delivery d = mailbox.poll();
+					if (d == null) {
+						break;
+					}
+					dispatch(entity, d);
+				}
+			} catch (RuntimeException | Error e) {
+				failure.compareAndSet(null, e);
+			}
+			scheduled.set(node, 0);
+			// a sender may have seen us still scheduled after our last poll
+			if (!mailbox.isEmpty() && failure.get() == null) {
+				schedule(node);
+			}
+		}
+	}
+
+	private final Topology topology;
+	private final Entity[] entities;
+	private final AtomicReferenceArray<ConcurrentLinkedQueue<Delivery>> mailboxes;
+	private final AtomicIntegerArray scheduled;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder events = new LongAdder();
+	private final int parallelism;
+
+	private ForkJoinPool pool;
+	private IntFunction<String> inputs = node -> null;
+	private PrintStream console = System.out;
+	private boolean copyContents = true;
+	private Probe probe;
+
+	public ParallelSimulator(Topology topology, Supplier<? extends Entity> protocol) {
+		this(topology, protocol, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelSimulator(Topology topology, Supplier<? extends Entity> protocol, int parallelism) {
+		this.topology = topology;
+		this.parallelism = parallelism;
+		this.entities = new Entity[topology.size()];
+		this.mailboxes = new AtomicReferenceArray<>(topology.size());
+		this.scheduled = new AtomicIntegerArray(topology.size());
+		for (int v = 0; v < entities.length; v++) {
+			Entity entity = protocol.get();
+			entity.attach(this, v);
+			entities[v] = entity;
+		}
+	}
+
+	public ParallelSimulator inputs(IntFunction<String> inputs) {
+		this.inputs = inputs;
+		return this;
+	}
+
+	/**
+	 * Where {@link Entity#printToConsole(String)} goes, {@code null} to discard.
+	 * Lines from different entities interleave arbitrarily.
+	 */
+	public ParallelSimulator console(PrintStream console) {
+		this.console = console;
+		return this;
+	}
+
+	/**
+	 * @see Simulator#copyContents(boolean)
+	 */
+	public ParallelSimulator copyContents(boolean copyContents) {
+		this.copyContents = copyContents;
+		return this;
+	}
+
+	/**
+	 * Counts messages and state transitions into {@code probe}, {@code null} to
+	 * stop counting
+	 */
+	public ParallelSimulator probe(Probe probe) {
+		this.probe = probe;
+		return this;
+	}
+
+	/**
+	 * Queues {@link Entity#init()} on the given nodes, they start with
+	 * {@link #run()}
+	 */
+	public ParallelSimulator initiate(int... nodes) {
+		for (int node : nodes) {
+			mailbox(node).offer(new Delivery(INIT, -1, null));
+		}
+		return this;
+	}
+
+	public ParallelSimulator initiate(String... names) {
+		for (String name : names) {
+			int node = topology.indexOf(name);
+			if (node < 0) {
+				throw new IllegalArgumentException("Unknown node " + name);
+			}
+			initiate(node);
+		}
+		return this;
+	}
+
+	/**
+	 * Runs until every mailbox is empty
+	 *
+	 * @return number of events processed
+	 */
+	public long run() {
+		long before = events.sum();
+		pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		try {
+			for (int v = 0; v < entities.length; v++) {
+				ConcurrentLinkedQueue<Delivery> mailbox = mailboxes.get(v);
+				if (mailbox != null && !mailbox.isEmpty()) {
+					schedule(v);
+				}
+			}
+			while (!pool.awaitQuiescence(1, TimeUnit.SECONDS)) {
+				if (failure.get() != null) {
+					break;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+			pool = null;
+		}
+		Throwable t = failure.get();
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return events.sum() - before;
+	}
+
+	private void dispatch(Entity entity, Delivery d) {
+		switch (d.kind) {
+		case INIT:
+			entity.start();
+			break;
+		case DELIVER:
+			entity.deliver(d.port, d.message);
+			break;
+		case ALARM:
+			entity.ring();
+			break;
+		default:
+			throw new IllegalStateException("Unexpected delivery kind " + d.kind);
+		}
+		events.increment();
+	}
+
+	private ConcurrentLinkedQueue<Delivery> mailbox(int node) {
+		ConcurrentLinkedQueue<Delivery> mailbox = mailboxes.get(node);
+		if (mailbox == null) {
+			mailboxes.compareAndSet(node, null, new ConcurrentLinkedQueue<>());
+			mailbox = mailboxes.get(node);
+		}
+		return mailbox;
+	}
+
+	private void post(int node, Delivery d) {
+		mailbox(node).offer(d);
+		if (pool != null) {
+			schedule(node);
+		}
+	}
+
+	private void schedule(int node) {
+		if (scheduled.compareAndSet(node, 0, 1)) {
+			Drain task = new Drain(node);
+			if (ForkJoinTask.getPool() == pool) {
+				// stays on this worker unless someone steals it
+				task.fork();
+			} else {
+				pool.execute(task);
+			}
+		}
+	}
+
+	@Override
+	public Topology topology() {
+		return topology;
+	}
+
+	@Override
+	public String userInput(int node) {
+		return inputs.apply(node);
+	}
+
+	@Override
+	public void send(int node, int[] ports, int count, IMessage message) {
+		boolean share = !copyContents || Payloads.isImmutable(message.getContent());
+		byte[] serialized = share ? null : Payloads.serialize(message.getContent());
+		if (probe != null) {
+			probe.sent(node, ports, count, message, serialized != null ? serialized.length : -1);
+		}
+		int first = topology.firstSlot(node);
+		for (int i = 0; i < count; i++) {
+			int slot = first + ports[i];
+			IMessage copy = share ? message : new Message(message.getLabel(), Payloads.deserialize(serialized));
+			post(topology.target(slot), new Delivery(DELIVER, topology.reversePort(slot), copy));
+		}
+		messages.add(count);
+	}
+
+	@Override
+	public void transition(int node, int from, int to) {
+		if (probe != null) {
+			probe.transition(node, from, to);
+		}
+	}
+
+	@Override
+	public void setAlarm(int node, int delay) {
+		post(node, new Delivery(ALARM, -1, null));
+	}
+
+	@Override
+	public void print(int node, String text) {
+		if (console != null) {
+			console.println(text);
+		}
+	}
+
+	public Entity entity(int node) {
+		return entities[node];
+	}
+
+	public long messages() {
+		return messages.sum();
+	}
+
+	public long events() {
+		return events.sum();
+	}
+}
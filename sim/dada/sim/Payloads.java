@@ -0,0 +1,151 @@
+package dada.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Message content copying.
+ *
+ * DisJ serializes message contents on every send, so protocols are free to
+ * mutate a received content or an object they have just sent. To preserve that
+ * the engine gives every receiver its own copy unless the content is immutable
+ * (see {@link #isImmutable(Object)}). Ranking, for instance, never writes to
+ * the int[] of a DATA message once sent, yet every receiver gets a copy of it;
+ * its streaming updates are Longs, which all receivers share.
+ *
+ * Contents with a registered {@link Codec}, and every {@link Externalizable}
+ * content, are encoded by their codec; anything else goes through Java
+ * serialization. The first byte of an encoding tells which one was used.
+ */
+public final class Payloads {
+
+	private static final int JAVA = 0;
+	private static final int MAX_CODECS = 255;
+
+	private static final ConcurrentHashMap<Class<?>, Integer> codecIds = new ConcurrentHashMap<>();
+	private static volatile Codec<?>[] codecs = new Codec<?>[0];
+
+	private Payloads() {
+	}
+
+	/**
+	 * Makes {@link #serialize(Object)} use {@code codec} for contents of exactly
+	 * its type
+	 */
+	public static synchronized void register(Codec<?> codec) {
+		Integer existing = codecIds.get(codec.type());
+		if (existing != null) {
+			Codec<?>[] current = codecs.clone();
+			current[existing] = codec;
+			codecs = current;
+			return;
+		}
+		if (codecs.length == MAX_CODECS) {
+			throw new IllegalStateException("Too many codecs");
+		}
+		Codec<?>[] current = Arrays.copyOf(codecs, codecs.length + 1);
+		current[codecs.length] = codec;
+		codecs = current;
+		codecIds.put(codec.type(), codecs.length - 1);
+	}
+
+	/**
+	 * Whether the content can be shared among receivers as is
+	 */
+	public static boolean isImmutable(Object content) {
+		if (content == null || content instanceof String || content instanceof Number
+				|| content instanceof Boolean || content instanceof Character || content instanceof Enum) {
+			return true;
+		}
+		if (content instanceof IMessage) {
+			return isImmutable(((IMessage) content).getContent());
+		}
+		return false;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static byte[] serialize(Object content) {
+		Integer id = content != null ? codecId(content.getClass()) : null;
+		if (id == null) {
+			return javaSerialize(content, true);
+		}
+		BytesOutput out = new BytesOutput(64);
+		out.writeByte(id + 1);
+		try {
+			((Codec) codecs[id]).write(content, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot encode " + content.getClass().getName(), e);
+		}
+		return out.toByteArray();
+	}
+
+	public static Object deserialize(byte[] data) {
+		int tag = data[0] & 0xFF;
+		if (tag == JAVA) {
+			return javaDeserialize(data, 1);
+		}
+		try {
+			return codecs[tag - 1].read(new BytesInput(data, 1, data.length - 1));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Integer codecId(Class<?> type) {
+		Integer id = codecIds.get(type);
+		if (id == null && Externalizable.class.isAssignableFrom(type)) {
+			synchronized (Payloads.class) {
+				id = codecIds.get(type);
+				if (id == null) {
+					register(Codec.externalizable((Class<? extends Externalizable>) type));
+					id = codecIds.get(type);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Plain Java serialization, no tag
+	 */
+	static byte[] javaSerialize(Object content) {
+		return javaSerialize(content, false);
+	}
+
+	static Object javaDeserialize(byte[] data) {
+		return javaDeserialize(data, 0);
+	}
+
+	private static byte[] javaSerialize(Object content, boolean tagged) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		if (tagged) {
+			bytes.write(JAVA);
+		}
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(content);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot serialize " + content.getClass().getName(), e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object javaDeserialize(byte[] data, int offset) {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data, offset, data.length - offset))) {
+			return in.readObject();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
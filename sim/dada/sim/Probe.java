@@ -0,0 +1,251 @@
+package dada.sim;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Message complexity counters, attached to an engine with {@code probe(...)}.
+ *
+ * Counts messages and payload bytes by label, messages per link (port slot) and
+ * state transitions, both per entity and per (from, to) pair. Totals are
+ * {@link LongAdder}s and per-link / per-entity counters are atomic arrays, so
+ * the parallel engine can update them without locking. The (from, to) counters
+ * are a dense matrix over the non-negative states, grown under a lock when a
+ * larger state shows up; growing copies the counters themselves, not their
+ * values, so no count is lost to a concurrent increment. Payload bytes are the
+ * size of the serialized content and are only measured when asked for, since
+ * that costs a serialization per immutable content.
+ */
+public class Probe {
+
+	private final Topology topology;
+	private final boolean measureBytes;
+
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final ConcurrentHashMap<String, LongAdder[]> labels = new ConcurrentHashMap<>();
+	// transitions[from * states + to], states a power of two
+	private volatile LongAdder[] transitions = newTransitions(new LongAdder[0], 0, 8);
+	private int states = 8;
+	private final AtomicLongArray links;
+	private final AtomicLongArray entityTransitions;
+
+	public Probe(Topology topology) {
+		this(topology, false);
+	}
+
+	public Probe(Topology topology, boolean measureBytes) {
+		this.topology = topology;
+		this.measureBytes = measureBytes;
+		this.links = new AtomicLongArray(topology.slots());
+		this.entityTransitions = new AtomicLongArray(topology.size());
+	}
+
+	public boolean measuresBytes() {
+		return measureBytes;
+	}
+
+	/**
+	 * Records a message sent from {@code node} through {@code count} ports.
+	 * {@code size} is the serialized size of the content when known, -1 otherwise.
+	 */
+	void sent(int node, int[] ports, int count, IMessage message, int size) {
+		LongAdder[] byLabel = labels.get(message.getLabel());
+		if (byLabel == null) {
+			byLabel = labels.computeIfAbsent(message.getLabel(), k -> new LongAdder[] { new LongAdder(), new LongAdder() });
+		}
+		byLabel[0].add(count);
+		messages.add(count);
+		if (measureBytes) {
+			if (size < 0) {
+				size = message.getContent() == null ? 0 : Payloads.serialize(message.getContent()).length;
+			}
+			byLabel[1].add((long) size * count);
+			bytes.add((long) size * count);
+		}
+		int first = topology.firstSlot(node);
+		for (int i = 0; i < count; i++) {
+			links.incrementAndGet(first + ports[i]);
+		}
+	}
+
+	void transition(int node, int from, int to) {
+		entityTransitions.incrementAndGet(node);
+		LongAdder[] matrix = transitions;
+		int side = Integer.numberOfTrailingZeros(matrix.length) >> 1;
+		if ((from | to) >>> side != 0) {
+			matrix = grow(from, to);
+			side = Integer.numberOfTrailingZeros(matrix.length) >> 1;
+		}
+		matrix[(from << side) | to].increment();
+	}
+
+	private synchronized LongAdder[] grow(int from, int to) {
+		if (from < 0 || to < 0) {
+			throw new IllegalArgumentException("Negative state: " + from + "->" + to);
+		}
+		int state = Math.max(from, to);
+		if (state >= states) {
+			int side = Integer.highestOneBit(state) << 1;
+			transitions = newTransitions(transitions, states, side);
+			states = side;
+		}
+		return transitions;
+	}
+
+	/**
+	 * side x side matrix holding the counters of the old one
+	 */
+	private static LongAdder[] newTransitions(LongAdder[] old, int oldSide, int side) {
+		LongAdder[] matrix = new LongAdder[side * side];
+		for (int from = 0; from < side; from++) {
+			for (int to = 0; to < side; to++) {
+				matrix[from * side + to] = from < oldSide && to < oldSide ? old[from * oldSide + to] : new LongAdder();
+			}
+		}
+		return matrix;
+	}
+
+	public long messages() {
+		return messages.sum();
+	}
+
+	public long bytes() {
+		return bytes.sum();
+	}
+
+	public long messages(String label) {
+		LongAdder[] byLabel = labels.get(label);
+		return byLabel != null ? byLabel[0].sum() : 0;
+	}
+
+	public long bytes(String label) {
+		LongAdder[] byLabel = labels.get(label);
+		return byLabel != null ? byLabel[1].sum() : 0;
+	}
+
+	/**
+	 * Messages sent through the given port of the given node
+	 */
+	public long link(int node, int port) {
+		return links.get(topology.slot(node, port));
+	}
+
+	/**
+	 * Messages sent by the given node
+	 */
+	public long sentBy(int node) {
+		long sum = 0;
+		for (int port = 0; port < topology.degree(node); port++) {
+			sum += links.get(topology.slot(node, port));
+		}
+		return sum;
+	}
+
+	/**
+	 * Times the given node called become()
+	 */
+	public long transitions(int node) {
+		return entityTransitions.get(node);
+	}
+
+	public long transitions(int from, int to) {
+		LongAdder[] matrix = transitions;
+		int side = Integer.numberOfTrailingZeros(matrix.length) >> 1;
+		return from >= 0 && to >= 0 && (from | to) >>> side == 0 ? matrix[(from << side) | to].sum() : 0;
+	}
+
+	/**
+	 * Point in time copy of the aggregated counters
+	 */
+	public Snapshot snapshot() {
+		Map<String, long[]> byLabel = new TreeMap<>();
+		labels.forEach((label, adders) -> byLabel.put(label, new long[] { adders[0].sum(), adders[1].sum() }));
+		Map<String, Long> byTransition = new TreeMap<>();
+		LongAdder[] matrix = transitions;
+		int side = Integer.numberOfTrailingZeros(matrix.length) >> 1;
+		for (int i = 0; i < matrix.length; i++) {
+			long count = matrix[i].sum();
+			if (count > 0) {
+				byTransition.put((i >>> side) + "->" + (i & ((1 << side) - 1)), count);
+			}
+		}
+		return new Snapshot(messages.sum(), bytes.sum(), byLabel, byTransition);
+	}
+
+	/**
+	 * Writes every counter as {@code metric,key,value} CSV rows. Per link rows
+	 * (only links that carried traffic) are included when {@code perLink} is set.
+	 */
+	public void writeCsv(Writer out, boolean perLink) throws IOException {
+		Snapshot s = snapshot();
+		out.write("metric,key,value\n");
+		out.write("messages,total," + s.messages + "\n");
+		out.write("bytes,total," + s.bytes + "\n");
+		for (Map.Entry<String, long[]> e : s.labels.entrySet()) {
+			out.write("messages,label:" + csv(e.getKey()) + "," + e.getValue()[0] + "\n");
+			out.write("bytes,label:" + csv(e.getKey()) + "," + e.getValue()[1] + "\n");
+		}
+		for (Map.Entry<String, Long> e : s.transitions.entrySet()) {
+			out.write("transitions," + e.getKey() + "," + e.getValue() + "\n");
+		}
+		if (perLink) {
+			for (int u = 0; u < topology.size(); u++) {
+				for (int port = 0; port < topology.degree(u); port++) {
+					int slot = topology.slot(u, port);
+					long count = links.get(slot);
+					if (count > 0) {
+						out.write("link," + csv(topology.name(u)) + "->" + csv(topology.name(topology.target(slot)))
+								+ "," + count + "\n");
+					}
+				}
+			}
+		}
+		out.flush();
+	}
+
+	private static String csv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * Aggregated counters at a point in time
+	 */
+	public static class Snapshot {
+		public final long messages;
+		public final long bytes;
+		/**
+		 * label -> {messages, bytes}
+		 */
+		public final Map<String, long[]> labels;
+		/**
+		 * "from->to" -> count
+		 */
+		public final Map<String, Long> transitions;
+
+		Snapshot(long messages, long bytes, Map<String, long[]> labels, Map<String, Long> transitions) {
+			this.messages = messages;
+			this.bytes = bytes;
+			this.labels = labels;
+			this.transitions = transitions;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder b = new StringBuilder();
+			b.append("messages=").append(messages).append(", bytes=").append(bytes);
+			labels.forEach((label, counts) -> b.append(", ").append(label).append('=').append(counts[0]));
+			return b.toString();
+		}
+	}
+}
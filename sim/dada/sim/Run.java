@@ -0,0 +1,168 @@
+package dada.sim;
+
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import distributed.plugin.runtime.engine.BoardAgent;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Command line front end:
+ *
+ * <pre>
+ * java dada.sim.Run [options] &lt;protocol class&gt; &lt;topology file&gt; [&lt;initiator&gt;...]
+ *
+ *   --quiet              discard printToConsole output
+ *   --log=level[,file]   protocol tracing (info, debug) to a file, dada.log
+ *                        by default, - for standard output
+ *   --delay=min,max      uniformly random link delays (FIFO preserved)
+ *   --parallel[=threads] run entities on all (or the given number of) cores
+ *   --sync[=threads]     synchronous rounds, each one run on all (or the
+ *                        given number of) cores
+ *   --seed=n             seed for random delays
+ *   --stats[=file]       print message counters, or write them all as CSV
+ *   --black-hole=node    (agents only) node that destroys incoming agents
+ * </pre>
+ *
+ * The topology file may be an edge list, a DisJ {@code .gph} or a CSR file
+ * (see {@link Network}). Initiators default to those saved in a {@code .gph}.
+ * For agent protocols the initiators are the home nodes of the agents, one
+ * agent per occurrence.
+ */
+public class Run {
+
+	public static void main(String[] args) throws Exception {
+		boolean quiet = false;
+		long minDelay = 1;
+		long maxDelay = 1;
+		long seed = 1;
+		String blackHole = null;
+		int threads = 0;
+		int syncThreads = 0;
+		String stats = null;
+		List<String> positional = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.equals("--quiet")) {
+				quiet = true;
+			} else if (arg.startsWith("--log=")) {
+				// read once, when the protocols first log
+				String[] log = arg.substring("--log=".length()).split(",", 2);
+				System.setProperty("dada.log", log[0]);
+				if (log.length > 1) {
+					System.setProperty("dada.log.file", log[1]);
+				}
+			} else if (arg.startsWith("--delay=")) {
+				String[] range = arg.substring("--delay=".length()).split(",");
+				minDelay = Long.parseLong(range[0]);
+				maxDelay = Long.parseLong(range[range.length - 1]);
+			} else if (arg.equals("--parallel")) {
+				threads = Runtime.getRuntime().availableProcessors();
+			} else if (arg.startsWith("--parallel=")) {
+				threads = Integer.parseInt(arg.substring("--parallel=".length()));
+			} else if (arg.equals("--sync")) {
+				syncThreads = Runtime.getRuntime().availableProcessors();
+			} else if (arg.startsWith("--sync=")) {
+				syncThreads = Integer.parseInt(arg.substring("--sync=".length()));
+			} else if (arg.equals("--stats")) {
+				stats = "";
+			} else if (arg.startsWith("--stats=")) {
+				stats = arg.substring("--stats=".length());
+			} else if (arg.startsWith("--seed=")) {
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			} else if (arg.startsWith("--black-hole=")) {
+				blackHole = arg.substring("--black-hole=".length());
+			} else {
+				positional.add(arg);
+			}
+		}
+		if (positional.size() < 2) {
+			System.err.println("Usage: Run [options] <protocol class> <topology file> [<initiator>...]");
+			System.exit(2);
+		}
+
+		Class<?> protocol = Class.forName(positional.get(0));
+		Network network = Network.open(Paths.get(positional.get(1)));
+		Topology topology = network.topology();
+		IntFunction<String> inputs = network.inputs();
+		String[] initiators = positional.size() > 2 ? positional.subList(2, positional.size()).toArray(String[]::new)
+				: network.initiators();
+		if (initiators.length == 0) {
+			System.err.println("No initiators given");
+			System.exit(2);
+		}
+		LinkDelay delay = minDelay == 1 && maxDelay == 1 ? LinkDelay.UNIT
+				: LinkDelay.uniform(seed, minDelay, maxDelay);
+
+		Probe probe = stats != null ? new Probe(topology, true) : null;
+
+		long start = System.currentTimeMillis();
+		if (Entity.class.isAssignableFrom(protocol) && syncThreads > 0) {
+			SyncSimulator sim = new SyncSimulator(topology, factory(protocol.asSubclass(Entity.class)), syncThreads)
+					.inputs(inputs)
+					.console(quiet ? null : System.out)
+					.probe(probe)
+					.initiate(initiators);
+			sim.run();
+			System.out.println("Messages: " + sim.messages() + ", rounds: " + sim.rounds());
+		} else if (Entity.class.isAssignableFrom(protocol) && threads > 0) {
+			ParallelSimulator sim = new ParallelSimulator(topology, factory(protocol.asSubclass(Entity.class)), threads)
+					.inputs(inputs)
+					.console(quiet ? null : System.out)
+					.probe(probe)
+					.initiate(initiators);
+			sim.run();
+			System.out.println("Messages: " + sim.messages() + ", threads: " + threads);
+		} else if (Entity.class.isAssignableFrom(protocol)) {
+			Simulator sim = new Simulator(topology, factory(protocol.asSubclass(Entity.class)))
+					.inputs(inputs)
+					.delay(delay)
+					.console(quiet ? null : System.out)
+					.probe(probe)
+					.initiate(initiators);
+			sim.run();
+			System.out.println("Messages: " + sim.messages() + ", time: " + sim.now());
+		} else if (BoardAgent.class.isAssignableFrom(protocol)) {
+			BoardSimulator sim = new BoardSimulator(topology, factory(protocol.asSubclass(BoardAgent.class)))
+					.inputs(inputs)
+					.delay(delay)
+					.console(quiet ? null : System.out);
+			if (blackHole != null) {
+				sim.blackHole(topology.indexOf(blackHole));
+			}
+			for (String home : initiators) {
+				sim.place(topology.indexOf(home));
+			}
+			sim.run();
+			System.out.println("Moves: " + sim.moves() + ", time: " + sim.now());
+		} else {
+			throw new IllegalArgumentException(protocol + " is neither an Entity nor a BoardAgent");
+		}
+		long finish = System.currentTimeMillis();
+
+		if (probe != null && stats.isEmpty()) {
+			System.out.println(probe.snapshot());
+		} else if (probe != null) {
+			try (Writer out = Files.newBufferedWriter(Paths.get(stats))) {
+				probe.writeCsv(out, true);
+			}
+		}
+		System.out.println("TimeElapsed: " + (finish - start) + " ms");
+	}
+
+	static <T> Supplier<T> factory(Class<T> type) throws NoSuchMethodException {
+		Constructor<T> constructor = type.getConstructor();
+		return () -> {
+			try {
+				return constructor.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+			}
+		};
+	}
+}
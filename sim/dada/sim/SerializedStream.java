@@ -0,0 +1,358 @@
+package dada.sim;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a Java serialization stream without loading any of the classes it
+ * mentions, which is how DisJ {@code .gph} files can be read outside the
+ * plugin.
+ *
+ * Objects come back as {@link Instance}s holding field values by name, plus
+ * whatever their writeObject methods wrote after the default fields
+ * ({@link Instance#annotations}: {@code byte[]} for block data, parsed objects
+ * otherwise). Arrays come back as Java arrays ({@code int[]}, {@code Object[]}
+ * ...), strings as Strings and enum constants as their names.
+ */
+final class SerializedStream {
+
+	private static final short MAGIC = (short) 0xACED;
+	private static final int BASE_HANDLE = 0x7E0000;
+
+	private static final int TC_NULL = 0x70;
+	private static final int TC_REFERENCE = 0x71;
+	private static final int TC_CLASSDESC = 0x72;
+	private static final int TC_OBJECT = 0x73;
+	private static final int TC_STRING = 0x74;
+	private static final int TC_ARRAY = 0x75;
+	private static final int TC_CLASS = 0x76;
+	private static final int TC_BLOCKDATA = 0x77;
+	private static final int TC_ENDBLOCKDATA = 0x78;
+	private static final int TC_RESET = 0x79;
+	private static final int TC_BLOCKDATALONG = 0x7A;
+	private static final int TC_LONGSTRING = 0x7C;
+	private static final int TC_PROXYCLASSDESC = 0x7D;
+	private static final int TC_ENUM = 0x7E;
+
+	private static final int SC_WRITE_METHOD = 0x01;
+	private static final int SC_SERIALIZABLE = 0x02;
+	private static final int SC_EXTERNALIZABLE = 0x04;
+	private static final int SC_BLOCK_DATA = 0x08;
+
+	/**
+	 * A deserialized object of a class that is not (necessarily) available
+	 */
+	static final class Instance {
+		final String className;
+		final Map<String, Object> fields = new LinkedHashMap<>();
+		final List<Object> annotations = new ArrayList<>();
+
+		Instance(String className) {
+			this.className = className;
+		}
+
+		Object get(String field) {
+			return fields.get(field);
+		}
+
+		/**
+		 * Annotations that are objects, i.e. what writeObject wrote with
+		 * writeObject. For maps these are alternating keys and values, for lists
+		 * the elements.
+		 */
+		List<Object> objects() {
+			List<Object> objects = new ArrayList<>();
+			for (Object a : annotations) {
+				if (!(a instanceof byte[])) {
+					objects.add(a == NULL ? null : a);
+				}
+			}
+			return objects;
+		}
+
+		@Override
+		public String toString() {
+			return className + fields.keySet();
+		}
+	}
+
+	private static final class ClassDesc {
+		final String name;
+		int flags;
+		char[] types;
+		String[] names;
+		ClassDesc parent;
+
+		ClassDesc(String name) {
+			this.name = name;
+		}
+	}
+
+	// stands for null inside annotation lists
+	private static final Object NULL = new Object();
+
+	private final DataInputStream in;
+	private final List<Object> handles = new ArrayList<>();
+
+	SerializedStream(InputStream in) throws IOException {
+		this.in = new DataInputStream(in);
+		if (this.in.readShort() != MAGIC) {
+			throw new StreamCorruptedException("Not a Java serialization stream");
+		}
+		this.in.readShort(); // version
+	}
+
+	/**
+	 * Next top level object
+	 */
+	Object readObject() throws IOException {
+		Object o = readContent(in.readUnsignedByte());
+		if (o instanceof byte[]) {
+			throw new StreamCorruptedException("Unexpected block data at top level");
+		}
+		return o == NULL ? null : o;
+	}
+
+	private Object readContent(int tc) throws IOException {
+		switch (tc) {
+		case TC_NULL:
+			return NULL;
+		case TC_REFERENCE:
+			return handles.get(in.readInt() - BASE_HANDLE);
+		case TC_STRING:
+			return handle(in.readUTF());
+		case TC_LONGSTRING:
+			return handle(readLongUtf());
+		case TC_CLASSDESC:
+		case TC_PROXYCLASSDESC:
+			return readClassDesc(tc);
+		case TC_CLASS:
+			return handle(readClassDesc(in.readUnsignedByte()));
+		case TC_OBJECT:
+			return readInstance();
+		case TC_ARRAY:
+			return readArray();
+		case TC_ENUM: {
+			readClassDesc(in.readUnsignedByte());
+			int handle = reserve();
+			Object name = readContent(in.readUnsignedByte());
+			handles.set(handle, name);
+			return name;
+		}
+		case TC_BLOCKDATA: {
+			byte[] data = new byte[in.readUnsignedByte()];
+			in.readFully(data);
+			return data;
+		}
+		case TC_BLOCKDATALONG: {
+			byte[] data = new byte[in.readInt()];
+			in.readFully(data);
+			return data;
+		}
+		case TC_RESET:
+			handles.clear();
+			return readContent(in.readUnsignedByte());
+		default:
+			throw new StreamCorruptedException(String.format("Unsupported type code 0x%02X", tc));
+		}
+	}
+
+	private ClassDesc readClassDesc(int tc) throws IOException {
+		switch (tc) {
+		case TC_NULL:
+			return null;
+		case TC_REFERENCE:
+			return (ClassDesc) handles.get(in.readInt() - BASE_HANDLE);
+		case TC_PROXYCLASSDESC: {
+			ClassDesc desc = new ClassDesc("$Proxy");
+			handle(desc);
+			int interfaces = in.readInt();
+			for (int i = 0; i < interfaces; i++) {
+				in.readUTF();
+			}
+			skipAnnotation();
+			desc.flags = SC_SERIALIZABLE;
+			desc.types = new char[0];
+			desc.names = new String[0];
+			desc.parent = readClassDesc(in.readUnsignedByte());
+			return desc;
+		}
+		case TC_CLASSDESC: {
+			ClassDesc desc = new ClassDesc(in.readUTF());
+			in.readLong(); // serialVersionUID
+			handle(desc);
+			desc.flags = in.readUnsignedByte();
+			int count = in.readShort();
+			desc.types = new char[count];
+			desc.names = new String[count];
+			for (int i = 0; i < count; i++) {
+				desc.types[i] = (char) in.readUnsignedByte();
+				desc.names[i] = in.readUTF();
+				if (desc.types[i] == 'L' || desc.types[i] == '[') {
+					readContent(in.readUnsignedByte()); // field class name
+				}
+			}
+			skipAnnotation();
+			desc.parent = readClassDesc(in.readUnsignedByte());
+			return desc;
+		}
+		default:
+			throw new StreamCorruptedException(String.format("Expected a class descriptor, got 0x%02X", tc));
+		}
+	}
+
+	private Instance readInstance() throws IOException {
+		ClassDesc desc = readClassDesc(in.readUnsignedByte());
+		Instance instance = new Instance(desc.name);
+		handle(instance);
+		List<ClassDesc> hierarchy = new ArrayList<>();
+		for (ClassDesc d = desc; d != null; d = d.parent) {
+			hierarchy.add(0, d);
+		}
+		for (ClassDesc d : hierarchy) {
+			if ((d.flags & SC_EXTERNALIZABLE) != 0) {
+				if ((d.flags & SC_BLOCK_DATA) == 0) {
+					throw new StreamCorruptedException("Externalizable " + d.name + " without block data");
+				}
+				readAnnotation(instance.annotations);
+			} else if ((d.flags & SC_SERIALIZABLE) != 0) {
+				for (int i = 0; i < d.types.length; i++) {
+					Object value = readValue(d.types[i]);
+					instance.fields.put(d.names[i], value == NULL ? null : value);
+				}
+				if ((d.flags & SC_WRITE_METHOD) != 0) {
+					readAnnotation(instance.annotations);
+				}
+			}
+		}
+		return instance;
+	}
+
+	private Object readArray() throws IOException {
+		ClassDesc desc = readClassDesc(in.readUnsignedByte());
+		int handle = reserve();
+		int length = in.readInt();
+		char type = desc.name.charAt(1);
+		Object array;
+		switch (type) {
+		case 'I': {
+			int[] a = new int[length];
+			for (int i = 0; i < length; i++) {
+				a[i] = in.readInt();
+			}
+			array = a;
+			break;
+		}
+		case 'J': {
+			long[] a = new long[length];
+			for (int i = 0; i < length; i++) {
+				a[i] = in.readLong();
+			}
+			array = a;
+			break;
+		}
+		case 'B': {
+			byte[] a = new byte[length];
+			in.readFully(a);
+			array = a;
+			break;
+		}
+		case 'L':
+		case '[': {
+			Object[] a = new Object[length];
+			handles.set(handle, a); // elements may refer to the array itself
+			for (int i = 0; i < length; i++) {
+				Object value = readContent(in.readUnsignedByte());
+				a[i] = value == NULL ? null : value;
+			}
+			array = a;
+			break;
+		}
+		default: {
+			Object[] a = new Object[length];
+			for (int i = 0; i < length; i++) {
+				a[i] = readPrimitive(type);
+			}
+			array = a;
+		}
+		}
+		handles.set(handle, array);
+		return array;
+	}
+
+	private Object readValue(char type) throws IOException {
+		if (type == 'L' || type == '[') {
+			return readContent(in.readUnsignedByte());
+		}
+		return readPrimitive(type);
+	}
+
+	private Object readPrimitive(char type) throws IOException {
+		switch (type) {
+		case 'B':
+			return in.readByte();
+		case 'C':
+			return in.readChar();
+		case 'D':
+			return in.readDouble();
+		case 'F':
+			return in.readFloat();
+		case 'I':
+			return in.readInt();
+		case 'J':
+			return in.readLong();
+		case 'S':
+			return in.readShort();
+		case 'Z':
+			return in.readBoolean();
+		default:
+			throw new StreamCorruptedException("Unknown field type " + type);
+		}
+	}
+
+	private void readAnnotation(List<Object> into) throws IOException {
+		int tc;
+		while ((tc = in.readUnsignedByte()) != TC_ENDBLOCKDATA) {
+			into.add(readContent(tc));
+		}
+	}
+
+	private void skipAnnotation() throws IOException {
+		readAnnotation(new ArrayList<>());
+	}
+
+	private String readLongUtf() throws IOException {
+		long length = in.readLong();
+		if (length > Integer.MAX_VALUE) {
+			throw new StreamCorruptedException("String too long");
+		}
+		byte[] bytes = new byte[(int) length];
+		in.readFully(bytes);
+		return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+	}
+
+	private int reserve() {
+		handles.add(null);
+		return handles.size() - 1;
+	}
+
+	private <T> T handle(T value) {
+		handles.add(value);
+		return value;
+	}
+
+	static Object read(InputStream in) throws IOException {
+		try {
+			return new SerializedStream(in).readObject();
+		} catch (EOFException e) {
+			throw new StreamCorruptedException("Truncated stream");
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package dada.sim;
+
+import java.io.PrintStream;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import distributed.plugin.runtime.IMessage;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Sequential discrete-event engine for message passing protocols.
+ *
+ * Every send becomes an event in a single priority queue ordered by simulated
+ * delivery time, and a single thread pops events and hands them to the target
+ * entity. There are no threads per entity and no handoffs per message, so the
+ * only limit on the network size is the heap.
+ *
+ * <pre>
+ * Simulator sim = new Simulator(topology, Flooding::new);
+ * sim.initiate(0);
+ * sim.run();
+ * </pre>
+ */
+public class Simulator implements Kernel {
+
+	private final Topology topology;
+	private final Entity[] entities;
+	private final EventQueue queue = new EventQueue();
+
+	private IntFunction<String> inputs = node -> null;
+	private LinkDelay delay = LinkDelay.UNIT;
+	private long[] lastArrival;
+	private PrintStream console = System.out;
+	private boolean copyContents = true;
+	private Probe probe;
+
+	private long now;
+	private long messages;
+	private long events;
+
+	public Simulator(Topology topology, Supplier<? extends Entity> protocol) {
+		this.topology = topology;
+		this.entities = new Entity[topology.size()];
+		for (int v = 0; v < entities.length; v++) {
+			Entity entity = protocol.get();
+			entity.attach(this, v);
+			entities[v] = entity;
+		}
+	}
+
+	/**
+	 * Source of {@link Entity#getUserInput()}
+	 */
+	public Simulator inputs(IntFunction<String> inputs) {
+		this.inputs = inputs;
+		return this;
+	}
+
+	public Simulator delay(LinkDelay delay) {
+		this.delay = delay;
+		this.lastArrival = delay.isConstant() ? null : new long[topology.slots()];
+		return this;
+	}
+
+	/**
+	 * Where {@link Entity#printToConsole(String)} goes, {@code null} to discard
+	 */
+	public Simulator console(PrintStream console) {
+		this.console = console;
+		return this;
+	}
+
+	/**
+	 * Whether mutable contents are copied for every receiver (default). Only turn
+	 * it off for protocols that never modify a content after sending or receiving
+	 * it.
+	 */
+	public Simulator copyContents(boolean copyContents) {
+		this.copyContents = copyContents;
+		return this;
+	}
+
+	/**
+	 * Counts messages and state transitions into {@code probe}, {@code null} to
+	 * stop counting
+	 */
+	public Simulator probe(Probe probe) {
+		this.probe = probe;
+		return this;
+	}
+
+	/**
+	 * Schedules {@link Entity#init()} on the given nodes at the current time
+	 */
+	public Simulator initiate(int... nodes) {
+		for (int node : nodes) {
+			queue.add(new Event(now, Event.INIT, node, -1, null));
+		}
+		return this;
+	}
+
+	public Simulator initiate(String... names) {
+		for (String name : names) {
+			int node = topology.indexOf(name);
+			if (node < 0) {
+				throw new IllegalArgumentException("Unknown node " + name);
+			}
+			initiate(node);
+		}
+		return this;
+	}
+
+	/**
+	 * Runs until there is nothing left to do
+	 *
+	 * @return number of events processed
+	 */
+	public long run() {
+		return run(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Runs until there is nothing left to do or the simulated clock would go past
+	 * {@code until}
+	 */
+	public long run(long until) {
+		long processed = 0;
+		Event e;
+		// the next event stays queued, keeping its place among equal times
+		while ((e = queue.peek()) != null && e.time <= until) {
+			queue.poll();
+			now = e.time;
+			Entity entity = entities[e.node];
+			switch (e.kind) {
+			case Event.INIT:
+				entity.start();
+				break;
+			case Event.DELIVER:
+				entity.deliver(e.port, e.message);
+				break;
+			case Event.ALARM:
+				entity.ring();
+				break;
+			default:
+				throw new IllegalStateException("Unexpected event kind " + e.kind);
+			}
+			processed++;
+		}
+		events += processed;
+		return processed;
+	}
+
+	@Override
+	public Topology topology() {
+		return topology;
+	}
+
+	@Override
+	public String userInput(int node) {
+		return inputs.apply(node);
+	}
+
+	@Override
+	public void send(int node, int[] ports, int count, IMessage message) {
+		boolean share = !copyContents || Payloads.isImmutable(message.getContent());
+		byte[] serialized = share ? null : Payloads.serialize(message.getContent());
+		if (probe != null) {
+			probe.sent(node, ports, count, message, serialized != null ? serialized.length : -1);
+		}
+		int first = topology.firstSlot(node);
+		for (int i = 0; i < count; i++) {
+			int slot = first + ports[i];
+			long arrival = now + delay.delay(slot);
+			if (lastArrival != null) {
+				// FIFO links: never overtake the previous message on this link
+				arrival = Math.max(arrival, lastArrival[slot]);
+				lastArrival[slot] = arrival;
+			}
+			IMessage copy = share ? message : new Message(message.getLabel(), Payloads.deserialize(serialized));
+			queue.add(new Event(arrival, Event.DELIVER, topology.target(slot), topology.reversePort(slot), copy));
+		}
+		messages += count;
+	}
+
+	@Override
+	public void transition(int node, int from, int to) {
+		if (probe != null) {
+			probe.transition(node, from, to);
+		}
+	}
+
+	@Override
+	public void setAlarm(int node, int delay) {
+		queue.add(new Event(now + Math.max(delay, 0), Event.ALARM, node, -1, null));
+	}
+
+	@Override
+	public void print(int node, String text) {
+		if (console != null) {
+			console.println(text);
+		}
+	}
+
+	public Entity entity(int node) {
+		return entities[node];
+	}
+
+	/**
+	 * Current simulated time
+	 */
+	public long now() {
+		return now;
+	}
+
+	/**
+	 * Messages sent so far
+	 */
+	public long messages() {
+		return messages;
+	}
+
+	/**
+	 * Events processed so far
+	 */
+	public long events() {
+		return events;
+	}
+}
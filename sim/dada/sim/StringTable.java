@@ -0,0 +1,59 @@
+package dada.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Indexed strings, either plain Java strings or UTF-8 bytes in a (possibly
+ * memory mapped) buffer that are decoded on access.
+ *
+ * The encoded layout is {@code count}, {@code count + 1} byte offsets and the
+ * concatenated bytes, see {@link CsrFile}.
+ */
+final class StringTable {
+
+	private final String[] strings;
+	private final IntBuffer offsets;
+	private final ByteBuffer bytes;
+
+	StringTable(String[] strings) {
+		this.strings = strings;
+		this.offsets = null;
+		this.bytes = null;
+	}
+
+	StringTable(IntBuffer offsets, ByteBuffer bytes) {
+		this.strings = null;
+		this.offsets = offsets;
+		this.bytes = bytes;
+	}
+
+	int size() {
+		return strings != null ? strings.length : offsets.limit() - 1;
+	}
+
+	String get(int index) {
+		if (strings != null) {
+			return strings[index];
+		}
+		int from = offsets.get(index);
+		byte[] utf8 = new byte[offsets.get(index + 1) - from];
+		bytes.get(from, utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes every string, for small tables that are hit often
+	 */
+	StringTable decoded() {
+		if (strings != null) {
+			return this;
+		}
+		String[] all = new String[size()];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = get(i);
+		}
+		return new StringTable(all);
+	}
+}
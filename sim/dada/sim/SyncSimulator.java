@@ -0,0 +1,411 @@
+package dada.sim;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import distributed.plugin.runtime.IMessage;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Lock-step engine for synchronous protocols such as {@code AsFar}.
+ *
+ * Time advances in rounds. Initiators run {@link Entity#init()} in round 0 and
+ * every message sent in round {@code r} is delivered in round {@code r + 1}:
+ * each entity gets all of its messages for the round in one batch, ordered by
+ * incoming port (and by send order on the same port), followed by the alarms
+ * that are due. Entities active in a round run in parallel on a
+ * {@link ForkJoinPool}, and a round only starts once the previous one is over.
+ *
+ * Messages are buffered per link on the receiving side. A link has a single
+ * sender, which never runs on two threads at once, so the buffers need no
+ * locking; there are two generations of them, one read and one written per
+ * round. {@link #rounds()} gives the time complexity next to
+ * {@link #messages()}: with unit delays it is the time {@link Simulator}
+ * reports.
+ */
+public class SyncSimulator implements Kernel {
+
+	// below this many active entities a round runs on the calling thread
+	private static final int SEQUENTIAL = 1024;
+	// entities per task when a round is split
+	private static final int GRAIN = 256;
+
+	/**
+	 * Several messages sent on the same link in the same round
+	 */
+	private static final class Batch {
+		IMessage[] messages = new IMessage[4];
+		int size;
+
+		void add(IMessage message) {
+			if (size == messages.length) {
+				messages = Arrays.copyOf(messages, size * 2);
+			}
+			messages[size++] = message;
+		}
+	}
+
+	/**
+	 * Entities a thread activated for the next round
+	 */
+	private static final class Frontier {
+		int[] nodes = new int[64];
+		int size;
+
+		void add(int node) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			nodes[size++] = node;
+		}
+	}
+
+	private final class Step extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] active;
+		private final int from;
+		private final int to;
+
+		Step(int[] active, int from, int to) {
+			this.active = active;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				for (int i = from; i < to; i++) {
+					step(active[i]);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Step(active, from, middle), new Step(active, middle, to));
+			}
+		}
+	}
+
+	private final Topology topology;
+	private final Entity[] entities;
+	// per receiving slot: null, an IMessage or a Batch, indexed by round parity
+	private final Object[][] inboxes;
+	// last round each entity was scheduled for
+	private final AtomicLongArray scheduled;
+	private final boolean[] starting;
+	private final int[] ringing;
+	private final ConcurrentSkipListMap<Long, Frontier> alarms = new ConcurrentSkipListMap<>();
+	private final ConcurrentLinkedQueue<Frontier> frontiers = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Frontier> frontier = ThreadLocal.withInitial(() -> {
+		Frontier f = new Frontier();
+		frontiers.add(f);
+		return f;
+	});
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder events = new LongAdder();
+	private final int parallelism;
+
+	private IntFunction<String> inputs = node -> null;
+	private PrintStream console = System.out;
+	private boolean copyContents = true;
+	private Probe probe;
+	private int grain;
+
+	private long round;
+	private long last;
+	private int[] initiators = new int[0];
+
+	public SyncSimulator(Topology topology, Supplier<? extends Entity> protocol) {
+		this(topology, protocol, Runtime.getRuntime().availableProcessors());
+	}
+
+	public SyncSimulator(Topology topology, Supplier<? extends Entity> protocol, int parallelism) {
+		this.topology = topology;
+		this.parallelism = parallelism;
+		this.entities = new Entity[topology.size()];
+		this.inboxes = new Object[][] { new Object[topology.slots()], new Object[topology.slots()] };
+		this.scheduled = new AtomicLongArray(topology.size());
+		this.starting = new boolean[topology.size()];
+		this.ringing = new int[topology.size()];
+		for (int v = 0; v < entities.length; v++) {
+			Entity entity = protocol.get();
+			entity.attach(this, v);
+			entities[v] = entity;
+			scheduled.set(v, -1);
+		}
+	}
+
+	public SyncSimulator inputs(IntFunction<String> inputs) {
+		this.inputs = inputs;
+		return this;
+	}
+
+	/**
+	 * Where {@link Entity#printToConsole(String)} goes, {@code null} to discard.
+	 * Lines from entities active in the same round interleave arbitrarily.
+	 */
+	public SyncSimulator console(PrintStream console) {
+		this.console = console;
+		return this;
+	}
+
+	/**
+	 * @see Simulator#copyContents(boolean)
+	 */
+	public SyncSimulator copyContents(boolean copyContents) {
+		this.copyContents = copyContents;
+		return this;
+	}
+
+	/**
+	 * Counts messages and state transitions into {@code probe}, {@code null} to
+	 * stop counting
+	 */
+	public SyncSimulator probe(Probe probe) {
+		this.probe = probe;
+		return this;
+	}
+
+	/**
+	 * Schedules {@link Entity#init()} on the given nodes in the next round
+	 */
+	public SyncSimulator initiate(int... nodes) {
+		int[] all = Arrays.copyOf(initiators, initiators.length + nodes.length);
+		System.arraycopy(nodes, 0, all, initiators.length, nodes.length);
+		initiators = all;
+		return this;
+	}
+
+	public SyncSimulator initiate(String... names) {
+		for (String name : names) {
+			int node = topology.indexOf(name);
+			if (node < 0) {
+				throw new IllegalArgumentException("Unknown node " + name);
+			}
+			initiate(node);
+		}
+		return this;
+	}
+
+	/**
+	 * Runs rounds until no message is in transit and no alarm is set
+	 *
+	 * @return number of events processed
+	 */
+	public long run() {
+		long before = events.sum();
+		ForkJoinPool pool = null;
+		try {
+			while (true) {
+				int[] active = schedule();
+				if (active.length == 0) {
+					Map.Entry<Long, Frontier> next = alarms.firstEntry();
+					if (next == null) {
+						break;
+					}
+					// nothing in transit, skip to the next alarm
+					round = next.getKey();
+					continue;
+				}
+				if (active.length < SEQUENTIAL || parallelism <= 1) {
+					for (int node : active) {
+						step(node);
+					}
+				} else {
+					if (pool == null) {
+						pool = new ForkJoinPool(parallelism);
+					}
+					grain = Math.max(GRAIN, active.length / (parallelism * 8));
+					pool.invoke(new Step(active, 0, active.length));
+				}
+				last = round++;
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+		return events.sum() - before;
+	}
+
+	/**
+	 * Entities to run this round: pending initiators, those that got messages in
+	 * the previous round and those with an alarm due
+	 */
+	private int[] schedule() {
+		int size = initiators.length;
+		for (Frontier f : frontiers) {
+			size += f.size;
+		}
+		Frontier due = alarms.remove(round);
+		if (due != null) {
+			size += due.size;
+		}
+		int[] active = new int[size];
+		int count = 0;
+		for (Frontier f : frontiers) {
+			System.arraycopy(f.nodes, 0, active, count, f.size);
+			count += f.size;
+			f.size = 0;
+		}
+		for (int node : initiators) {
+			starting[node] = true;
+			if (mark(node)) {
+				active[count++] = node;
+			}
+		}
+		initiators = new int[0];
+		if (due != null) {
+			for (int i = 0; i < due.size; i++) {
+				int node = due.nodes[i];
+				ringing[node]++;
+				if (mark(node)) {
+					active[count++] = node;
+				}
+			}
+		}
+		return count == size ? active : Arrays.copyOf(active, count);
+	}
+
+	/**
+	 * Schedules {@code node} for the current round unless it already is
+	 */
+	private boolean mark(int node) {
+		long previous = scheduled.get(node);
+		return previous != round && scheduled.compareAndSet(node, previous, round);
+	}
+
+	/**
+	 * Runs one entity for the current round
+	 */
+	private void step(int node) {
+		Entity entity = entities[node];
+		if (starting[node]) {
+			starting[node] = false;
+			entity.start();
+			events.increment();
+		}
+		Object[] inbox = inboxes[(int) (round & 1)];
+		int first = topology.firstSlot(node);
+		int degree = topology.degree(node);
+		for (int port = 0; port < degree; port++) {
+			Object pending = inbox[first + port];
+			if (pending == null) {
+				continue;
+			}
+			inbox[first + port] = null;
+			if (pending instanceof Batch) {
+				Batch batch = (Batch) pending;
+				for (int i = 0; i < batch.size; i++) {
+					entity.deliver(port, batch.messages[i]);
+				}
+				events.add(batch.size);
+			} else {
+				entity.deliver(port, (IMessage) pending);
+				events.increment();
+			}
+		}
+		for (; ringing[node] > 0; ringing[node]--) {
+			entity.ring();
+			events.increment();
+		}
+	}
+
+	@Override
+	public Topology topology() {
+		return topology;
+	}
+
+	@Override
+	public String userInput(int node) {
+		return inputs.apply(node);
+	}
+
+	@Override
+	public void send(int node, int[] ports, int count, IMessage message) {
+		boolean share = !copyContents || Payloads.isImmutable(message.getContent());
+		byte[] serialized = share ? null : Payloads.serialize(message.getContent());
+		if (probe != null) {
+			probe.sent(node, ports, count, message, serialized != null ? serialized.length : -1);
+		}
+		Object[] inbox = inboxes[(int) ((round + 1) & 1)];
+		long next = round + 1;
+		int first = topology.firstSlot(node);
+		for (int i = 0; i < count; i++) {
+			int slot = first + ports[i];
+			int target = topology.target(slot);
+			int arrival = topology.firstSlot(target) + topology.reversePort(slot);
+			IMessage copy = share ? message : new Message(message.getLabel(), Payloads.deserialize(serialized));
+			Object pending = inbox[arrival];
+			if (pending == null) {
+				inbox[arrival] = copy;
+			} else if (pending instanceof Batch) {
+				((Batch) pending).add(copy);
+			} else {
+				Batch batch = new Batch();
+				batch.add((IMessage) pending);
+				batch.add(copy);
+				inbox[arrival] = batch;
+			}
+			long previous = scheduled.get(target);
+			if (previous != next && scheduled.compareAndSet(target, previous, next)) {
+				frontier.get().add(target);
+			}
+		}
+		messages.add(count);
+	}
+
+	@Override
+	public void transition(int node, int from, int to) {
+		if (probe != null) {
+			probe.transition(node, from, to);
+		}
+	}
+
+	/**
+	 * Rings the alarm {@code delay} rounds from now, at least in the next one
+	 */
+	@Override
+	public void setAlarm(int node, int delay) {
+		Frontier due = alarms.computeIfAbsent(round + Math.max(delay, 1), r -> new Frontier());
+		synchronized (due) {
+			due.add(node);
+		}
+	}
+
+	@Override
+	public void print(int node, String text) {
+		if (console != null) {
+			console.println(text);
+		}
+	}
+
+	public Entity entity(int node) {
+		return entities[node];
+	}
+
+	/**
+	 * Number of the last round anything happened in, round 0 being the one the
+	 * initiators started in
+	 */
+	public long rounds() {
+		return last;
+	}
+
+	public long messages() {
+		return messages.sum();
+	}
+
+	public long events() {
+		return events.sum();
+	}
+}
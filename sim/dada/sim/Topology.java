@@ -0,0 +1,339 @@
+package dada.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable network topology in compressed sparse row (CSR) layout.
+ *
+ * Every node owns a contiguous range of port slots {@code [offsets[v],
+ * offsets[v + 1])}. A slot records the node on the other side of the link, the
+ * index of the matching port at that node and whether the port can send and/or
+ * receive. A bidirectional link yields one IN|OUT slot at each end, a
+ * unidirectional link an OUT slot at the source and an IN slot at the target.
+ *
+ * Names are optional: nodes default to {@code "n" + index} (as DisJ does) and
+ * ports default to the name of the node they lead to. Port labels may instead
+ * be dictionary coded, which is what e.g. hypercubes need to label ports by
+ * dimension.
+ *
+ * The arrays are held as buffers so that a topology can also live in a memory
+ * mapped {@link CsrFile} without being copied to the heap.
+ */
+public class Topology {
+
+	public static final byte IN = 1;
+	public static final byte OUT = 2;
+
+	private final int size;
+	private final IntBuffer offsets;
+	private final IntBuffer targets;
+	private final IntBuffer reverse;
+	private final ByteBuffer flags;
+
+	private final StringTable names;
+	private final IntBuffer portLabels;
+	private final StringTable labelDictionary;
+
+	private Map<String, Integer> nameIndex;
+	private volatile int[] nameRanks;
+
+	public Topology(int size, int[] offsets, int[] targets, int[] reverse, byte[] flags, String[] names,
+			int[] portLabels, String[] labelDictionary) {
+		this(size, IntBuffer.wrap(offsets), IntBuffer.wrap(targets), IntBuffer.wrap(reverse), ByteBuffer.wrap(flags),
+				names != null ? new StringTable(names) : null, portLabels != null ? IntBuffer.wrap(portLabels) : null,
+				labelDictionary != null ? new StringTable(labelDictionary) : null);
+	}
+
+	Topology(int size, IntBuffer offsets, IntBuffer targets, IntBuffer reverse, ByteBuffer flags, StringTable names,
+			IntBuffer portLabels, StringTable labelDictionary) {
+		int slots = targets.limit();
+		if (offsets.limit() != size + 1 || offsets.get(size) != slots || reverse.limit() != slots
+				|| flags.limit() != slots || (portLabels != null && portLabels.limit() != slots)
+				|| (names != null && names.size() != size)) {
+			throw new IllegalArgumentException("Inconsistent CSR arrays");
+		}
+		if ((portLabels == null) != (labelDictionary == null)) {
+			throw new IllegalArgumentException("Port labels need a dictionary");
+		}
+		this.size = size;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.reverse = reverse;
+		this.flags = flags;
+		this.names = names;
+		this.portLabels = portLabels;
+		this.labelDictionary = labelDictionary;
+	}
+
+	/**
+	 * Number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of port slots (twice the number of links)
+	 */
+	public int slots() {
+		return targets.limit();
+	}
+
+	public int degree(int node) {
+		return offsets.get(node + 1) - offsets.get(node);
+	}
+
+	public int slot(int node, int port) {
+		return offsets.get(node) + port;
+	}
+
+	public int firstSlot(int node) {
+		return offsets.get(node);
+	}
+
+	/**
+	 * Node reached through the given slot
+	 */
+	public int target(int slot) {
+		return targets.get(slot);
+	}
+
+	/**
+	 * Index of the port, local to {@link #target(int)}, where messages sent
+	 * through the given slot arrive
+	 */
+	public int reversePort(int slot) {
+		return reverse.get(slot);
+	}
+
+	public boolean isOut(int slot) {
+		return (flags.get(slot) & OUT) != 0;
+	}
+
+	public boolean isIn(int slot) {
+		return (flags.get(slot) & IN) != 0;
+	}
+
+	public String name(int node) {
+		return names != null ? names.get(node) : "n" + node;
+	}
+
+	public String portName(int node, int port) {
+		int slot = offsets.get(node) + port;
+		if (portLabels != null) {
+			return labelDictionary.get(portLabels.get(slot));
+		}
+		return name(targets.get(slot));
+	}
+
+	/*
+	 * Raw access for CsrFile
+	 */
+
+	byte flags(int slot) {
+		return flags.get(slot);
+	}
+
+	StringTable names() {
+		return names;
+	}
+
+	IntBuffer portLabels() {
+		return portLabels;
+	}
+
+	StringTable labelDictionary() {
+		return labelDictionary;
+	}
+
+	/**
+	 * Looks a node up by name, -1 if there is no such node
+	 */
+	public synchronized int indexOf(String name) {
+		if (nameIndex == null) {
+			nameIndex = new HashMap<>(size * 2);
+			for (int i = 0; i < size; i++) {
+				nameIndex.put(name(i), i);
+			}
+		}
+		Integer index = nameIndex.get(name);
+		return index != null ? index : -1;
+	}
+
+	/**
+	 * Position of the node's name in the lexicographic order of all the names,
+	 * a dense id that does not depend on the order of the nodes
+	 */
+	public int nameRank(int node) {
+		int[] ranks = nameRanks;
+		if (ranks == null) {
+			ranks = rankNames();
+		}
+		return ranks[node];
+	}
+
+	private synchronized int[] rankNames() {
+		if (nameRanks == null) {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> name(a).compareTo(name(b)));
+			int[] ranks = new int[size];
+			for (int r = 0; r < size; r++) {
+				ranks[order[r]] = r;
+			}
+			nameRanks = ranks;
+		}
+		return nameRanks;
+	}
+
+	/**
+	 * Incremental construction of a topology out of individual links.
+	 */
+	public static class Builder {
+		private int size;
+		private int links;
+		private int[] from = new int[16];
+		private int[] to = new int[16];
+		private boolean[] bidirectional = new boolean[16];
+		private String[] names;
+		private int[][] labels;
+		private Map<String, Integer> dictionary;
+
+		public Builder(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * Adds a node and returns its index
+		 */
+		public int addNode(String name) {
+			if (names == null) {
+				names = new String[Math.max(16, size * 2)];
+				for (int i = 0; i < size; i++) {
+					names[i] = "n" + i;
+				}
+			} else if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+			}
+			names[size] = name;
+			return size++;
+		}
+
+		public Builder link(int u, int v) {
+			return add(u, v, true, null, null);
+		}
+
+		public Builder arc(int u, int v) {
+			return add(u, v, false, null, null);
+		}
+
+		/**
+		 * Bidirectional link whose ports are named {@code uPort} at {@code u} and
+		 * {@code vPort} at {@code v}
+		 */
+		public Builder link(int u, int v, String uPort, String vPort) {
+			return add(u, v, true, uPort, vPort);
+		}
+
+		/**
+		 * Unidirectional link whose ports are named {@code uPort} at {@code u} and
+		 * {@code vPort} at {@code v}
+		 */
+		public Builder arc(int u, int v, String uPort, String vPort) {
+			return add(u, v, false, uPort, vPort);
+		}
+
+		private Builder add(int u, int v, boolean both, String uPort, String vPort) {
+			if (u < 0 || v < 0 || u >= size || v >= size) {
+				throw new IndexOutOfBoundsException("Link " + u + "-" + v + " outside [0, " + size + ")");
+			}
+			if (links == from.length) {
+				from = Arrays.copyOf(from, links * 2);
+				to = Arrays.copyOf(to, links * 2);
+				bidirectional = Arrays.copyOf(bidirectional, links * 2);
+			}
+			if (uPort != null || labels != null) {
+				label(uPort, vPort);
+			}
+			from[links] = u;
+			to[links] = v;
+			bidirectional[links] = both;
+			links++;
+			return this;
+		}
+
+		private void label(String uPort, String vPort) {
+			if (labels == null) {
+				labels = new int[2][Math.max(16, from.length)];
+				dictionary = new HashMap<>();
+				// links added so far were named after the neighbour, keep it that way
+				for (int i = 0; i < links; i++) {
+					labels[0][i] = code(nodeName(to[i]));
+					labels[1][i] = code(nodeName(from[i]));
+				}
+			} else if (links == labels[0].length) {
+				labels[0] = Arrays.copyOf(labels[0], links * 2);
+				labels[1] = Arrays.copyOf(labels[1], links * 2);
+			}
+			labels[0][links] = code(uPort);
+			labels[1][links] = code(vPort);
+		}
+
+		private String nodeName(int node) {
+			return names != null ? names[node] : "n" + node;
+		}
+
+		private int code(String label) {
+			return dictionary.computeIfAbsent(label, k -> dictionary.size());
+		}
+
+		public Topology build() {
+			int[] offsets = new int[size + 1];
+			for (int i = 0; i < links; i++) {
+				offsets[from[i] + 1]++;
+				offsets[to[i] + 1]++;
+			}
+			for (int v = 0; v < size; v++) {
+				offsets[v + 1] += offsets[v];
+			}
+			int slots = offsets[size];
+			int[] fill = Arrays.copyOf(offsets, size);
+			int[] targets = new int[slots];
+			int[] reverse = new int[slots];
+			byte[] flags = new byte[slots];
+			int[] portLabels = labels != null ? new int[slots] : null;
+			for (int i = 0; i < links; i++) {
+				int u = from[i];
+				int v = to[i];
+				int su = fill[u]++;
+				int sv = fill[v]++;
+				targets[su] = v;
+				targets[sv] = u;
+				reverse[su] = sv - offsets[v];
+				reverse[sv] = su - offsets[u];
+				flags[su] = bidirectional[i] ? IN | OUT : OUT;
+				flags[sv] = bidirectional[i] ? IN | OUT : IN;
+				if (portLabels != null) {
+					// port at u is labelled as seen from u
+					portLabels[su] = labels[0][i];
+					portLabels[sv] = labels[1][i];
+				}
+			}
+			String[] dict = null;
+			if (dictionary != null) {
+				dict = new String[dictionary.size()];
+				for (Map.Entry<String, Integer> e : dictionary.entrySet()) {
+					dict[e.getValue()] = e.getKey();
+				}
+			}
+			return new Topology(size, offsets, targets, reverse, flags,
+					names != null ? Arrays.copyOf(names, size) : null, portLabels, dict);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package dada.sim;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Typed whiteboard of a node, the structured alternative to the list of
+ * strings behind {@code readFromBoard()}: one mark per port
+ * ({@link #ACTIVE} while an agent explores it, {@link #SAFE} once it is known
+ * not to lead to a black hole) and one round/share record. Lookups are O(1)
+ * and updates are atomic compare-and-sets, so co-located agents can race for
+ * a port without locking. Successful updates wake up the agents waiting for a
+ * board update at the node.
+ *
+ * Obtained through {@code BoardAgent.getWhiteboard()}; ports are the indexes
+ * of the node's ports.
+ */
+public final class Whiteboard {
+
+	public static final int NONE = 0;
+	public static final int ACTIVE = 1;
+	public static final int SAFE = 2;
+
+	public static final long NO_RECORD = 0;
+
+	private final BoardKernel kernel;
+	private final int node;
+	private final AtomicIntegerArray marks;
+	private final AtomicInteger marked = new AtomicInteger();
+	private final AtomicLong record = new AtomicLong(NO_RECORD);
+
+	Whiteboard(BoardKernel kernel, int node, int degree) {
+		this.kernel = kernel;
+		this.node = node;
+		this.marks = new AtomicIntegerArray(degree);
+	}
+
+	public int mark(int port) {
+		return marks.get(port);
+	}
+
+	public boolean compareAndSetMark(int port, int expected, int mark) {
+		if (!marks.compareAndSet(port, expected, mark)) {
+			return false;
+		}
+		changed(expected, mark);
+		return true;
+	}
+
+	public void setMark(int port, int mark) {
+		changed(marks.getAndSet(port, mark), mark);
+	}
+
+	/**
+	 * Number of ports with a mark
+	 */
+	public int marked() {
+		return marked.get();
+	}
+
+	/**
+	 * The round/share record, {@link #NO_RECORD} if there is none
+	 */
+	public long record() {
+		return record.get();
+	}
+
+	public boolean compareAndSetRecord(long expected, long update) {
+		if (!record.compareAndSet(expected, update)) {
+			return false;
+		}
+		kernel.boardChanged(node);
+		return true;
+	}
+
+	/**
+	 * Removes and returns the record
+	 */
+	public long takeRecord() {
+		long taken = record.getAndSet(NO_RECORD);
+		if (taken != NO_RECORD) {
+			kernel.boardChanged(node);
+		}
+		return taken;
+	}
+
+	/**
+	 * Whether nothing has ever been written, or all of it was removed
+	 */
+	public boolean isEmpty() {
+		return marked.get() == 0 && record.get() == NO_RECORD;
+	}
+
+	/**
+	 * Packs a record, {@code round} must be positive
+	 */
+	public static long record(int round, int share) {
+		if (round <= 0) {
+			throw new IllegalArgumentException("Round must be positive: " + round);
+		}
+		return (long) round << 32 | (share & 0xffffffffL);
+	}
+
+	public static int round(long record) {
+		return (int) (record >>> 32);
+	}
+
+	public static int share(long record) {
+		return (int) record;
+	}
+
+	private void changed(int from, int to) {
+		if (from == to) {
+			return;
+		}
+		if (from == NONE) {
+			marked.incrementAndGet();
+		} else if (to == NONE) {
+			marked.decrementAndGet();
+		}
+		kernel.boardChanged(node);
+	}
+}
@@ -0,0 +1,13 @@
+package distributed.plugin.runtime;
+
+/**
+ * A message exchanged between entities: a label plus an arbitrary content.
+ *
+ * Headless counterpart of the DisJ interface of the same name.
+ */
+public interface IMessage {
+
+	String getLabel();
+
+	Object getContent();
+}
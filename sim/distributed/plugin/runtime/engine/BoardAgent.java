@@ -0,0 +1,226 @@
+package distributed.plugin.runtime.engine;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import dada.sim.BoardKernel;
+import dada.sim.Topology;
+import dada.sim.Whiteboard;
+
+/**
+ * Mobile agent that communicates through the whiteboards of the nodes it
+ * visits, headless counterpart of the DisJ class of the same name.
+ *
+ * Driven by {@link dada.sim.BoardSimulator} through {@link #attach},
+ * {@link #start}, {@link #arriveAt}, {@link #signal} and {@link #ring}.
+ *
+ * Besides the DisJ API, agents can address ports by index
+ * ({@link #getArrivalPort()}, {@link #getDegree()}, {@link #moveTo(int)}) and
+ * use the typed {@link Whiteboard} of the current node instead of string
+ * records.
+ */
+public abstract class BoardAgent implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum NotifyType {
+		BOARD_UPDATE, AGENT_ARRIVAL, AGENT_DEPARTURE
+	}
+
+	private int state;
+
+	private transient BoardKernel kernel;
+	private transient Topology topology;
+	private transient String agentId;
+	private transient int node = -1;
+	private transient int arrivalPort = -1;
+
+	public BoardAgent(int state) {
+		this.state = state;
+	}
+
+	/**
+	 * Invoked once on every agent at its home node
+	 */
+	public abstract void init();
+
+	/**
+	 * Invoked when the agent reaches a node, {@code incomingPort} is the port of
+	 * that node it came through
+	 */
+	public abstract void arrive(String incomingPort);
+
+	public abstract void notified(NotifyType type);
+
+	public abstract void alarmRing();
+
+	/*
+	 * Engine hooks
+	 */
+
+	public final void attach(BoardKernel kernel, String agentId, int home) {
+		this.kernel = kernel;
+		this.topology = kernel.topology();
+		this.agentId = agentId;
+		this.node = home;
+	}
+
+	public final void start() {
+		init();
+	}
+
+	public final void arriveAt(int node, int port) {
+		this.node = node;
+		this.arrivalPort = port;
+		arrive(topology.portName(node, port));
+	}
+
+	public final void signal(NotifyType type) {
+		notified(type);
+	}
+
+	public final void ring() {
+		alarmRing();
+	}
+
+	public final int getNodeIndex() {
+		return node;
+	}
+
+	/*
+	 * Protocol API
+	 */
+
+	public int getState() {
+		return state;
+	}
+
+	public void become(int state) {
+		this.state = state;
+	}
+
+	public String getAgentId() {
+		return agentId;
+	}
+
+	/**
+	 * Name of the node the agent is currently at
+	 */
+	public String getNodeId() {
+		return topology.name(node);
+	}
+
+	public int getNetworkSize() {
+		return topology.size();
+	}
+
+	public String getUserInput() {
+		return kernel.userInput(node);
+	}
+
+	public void printToConsole(String text) {
+		kernel.print(text);
+	}
+
+	public void setAlarm(int delay) {
+		kernel.setAlarm(this, delay);
+	}
+
+	public List<String> getPorts() {
+		String[] names = new String[topology.degree(node)];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = topology.portName(node, i);
+		}
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	public List<String> getOutPorts() {
+		int degree = topology.degree(node);
+		int first = topology.firstSlot(node);
+		List<String> names = new ArrayList<>(degree);
+		for (int i = 0; i < degree; i++) {
+			if (topology.isOut(first + i)) {
+				names.add(topology.portName(node, i));
+			}
+		}
+		return names;
+	}
+
+	public void moveTo(String port) {
+		int degree = topology.degree(node);
+		for (int i = 0; i < degree; i++) {
+			if (topology.portName(node, i).equals(port) && topology.isOut(topology.slot(node, i))) {
+				kernel.move(this, node, i);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Node " + getNodeId() + " has no outgoing port " + port);
+	}
+
+	/**
+	 * Index of the port of the current node the agent arrived through, -1 at its
+	 * home before its first move
+	 */
+	public int getArrivalPort() {
+		return arrivalPort;
+	}
+
+	/**
+	 * Number of ports of the current node
+	 */
+	public int getDegree() {
+		return topology.degree(node);
+	}
+
+	/**
+	 * Moves through the port with the given index
+	 */
+	public void moveTo(int port) {
+		if (port < 0 || port >= topology.degree(node) || !topology.isOut(topology.slot(node, port))) {
+			throw new IllegalArgumentException("Node " + getNodeId() + " has no outgoing port " + port);
+		}
+		kernel.move(this, node, port);
+	}
+
+	/**
+	 * The typed whiteboard at the current node
+	 */
+	public Whiteboard getWhiteboard() {
+		return kernel.whiteboard(node);
+	}
+
+	/**
+	 * A snapshot of the whiteboard at the current node
+	 */
+	public List<String> readFromBoard() {
+		return new ArrayList<>(kernel.board(node));
+	}
+
+	public void appendToBoard(String record) {
+		kernel.board(node).add(record);
+		kernel.boardChanged(node);
+	}
+
+	public void removeRecord(String record) {
+		if (kernel.board(node).remove(record)) {
+			kernel.boardChanged(node);
+		}
+	}
+
+	public int getNodeState() {
+		return kernel.nodeState(node);
+	}
+
+	public void setNodeState(int state) {
+		kernel.setNodeState(node, state);
+	}
+
+	/**
+	 * Asks to be notified of the next event of the given type at the current node
+	 */
+	public void registerHostEvent(NotifyType type) {
+		kernel.register(this, node, type);
+	}
+}
@@ -0,0 +1,278 @@
+package distributed.plugin.runtime.engine;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dada.sim.Kernel;
+import dada.sim.Message;
+import dada.sim.Topology;
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Message passing entity, headless counterpart of the DisJ class of the same
+ * name so that the protocols in {@code dada} run unchanged on the engines in
+ * {@code dada.sim}.
+ *
+ * An entity is bound to a node of a {@link Topology} by {@link #attach} and is
+ * driven by its {@link Kernel} through {@link #start}, {@link #deliver} and
+ * {@link #ring}. Port name lists are built lazily and cached, which keeps a
+ * million idle entities cheap.
+ */
+public abstract class Entity implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// beyond this degree port names are looked up through a map
+	private static final int LINEAR_LOOKUP = 16;
+
+	private int state;
+
+	private transient Kernel kernel;
+	private transient Topology topology;
+	private transient int node = -1;
+	private transient int incomingPort = -1;
+
+	private transient String name;
+	private transient String[] portNames;
+	private transient Map<String, Integer> portIndex;
+	private transient List<String> ports;
+	private transient List<String> outPorts;
+	private transient List<String> inPorts;
+	private transient int[] scratch;
+
+	public Entity(int state) {
+		this.state = state;
+	}
+
+	/**
+	 * Invoked only on initiators
+	 */
+	public abstract void init();
+
+	public abstract void receive(String incomingPort, IMessage message);
+
+	public abstract void alarmRing();
+
+	/*
+	 * Engine hooks
+	 */
+
+	public final void attach(Kernel kernel, int node) {
+		this.kernel = kernel;
+		this.topology = kernel.topology();
+		this.node = node;
+	}
+
+	public final void start() {
+		init();
+	}
+
+	public final void deliver(int port, IMessage message) {
+		incomingPort = port;
+		try {
+			receive(portNames()[port], message);
+		} finally {
+			incomingPort = -1;
+		}
+	}
+
+	public final void ring() {
+		alarmRing();
+	}
+
+	public final int getNodeIndex() {
+		return node;
+	}
+
+	/*
+	 * Protocol API
+	 */
+
+	public int getState() {
+		return state;
+	}
+
+	public void become(int state) {
+		kernel.transition(node, this.state, state);
+		this.state = state;
+	}
+
+	public String getName() {
+		if (name == null) {
+			name = topology.name(node);
+		}
+		return name;
+	}
+
+	/**
+	 * Position of this entity's name among all the names of the network, in
+	 * lexicographic order
+	 */
+	public int getNameRank() {
+		return topology.nameRank(node);
+	}
+
+	public String getUserInput() {
+		return kernel.userInput(node);
+	}
+
+	public int getNetworkSize() {
+		return topology.size();
+	}
+
+	public void printToConsole(String text) {
+		kernel.print(node, text);
+	}
+
+	public void setAlarm(int delay) {
+		kernel.setAlarm(node, delay);
+	}
+
+	/**
+	 * All ports, whatever their direction
+	 */
+	public List<String> getPorts() {
+		if (ports == null) {
+			ports = Collections.unmodifiableList(Arrays.asList(portNames()));
+		}
+		return ports;
+	}
+
+	public List<String> getOutPorts() {
+		if (outPorts == null) {
+			outPorts = filterPorts(Topology.OUT);
+		}
+		return outPorts;
+	}
+
+	public List<String> getInPorts() {
+		if (inPorts == null) {
+			inPorts = filterPorts(Topology.IN);
+		}
+		return inPorts;
+	}
+
+	public void sendTo(String label, String port, Object content) {
+		int[] target = scratch(1);
+		target[0] = outPort(port);
+		kernel.send(node, target, 1, new Message(label, content));
+	}
+
+	public void sendTo(String label, String[] ports, Object content) {
+		sendTo(ports, new Message(label, content));
+	}
+
+	public void sendTo(String port, IMessage message) {
+		int[] target = scratch(1);
+		target[0] = outPort(port);
+		kernel.send(node, target, 1, message);
+	}
+
+	public void sendTo(String[] ports, IMessage message) {
+		if (ports.length == 0) {
+			return;
+		}
+		int[] targets = scratch(ports.length);
+		for (int i = 0; i < ports.length; i++) {
+			targets[i] = outPort(ports[i]);
+		}
+		kernel.send(node, targets, ports.length, message);
+	}
+
+	public void sendToAll(String label, Object content) {
+		sendToAll(new Message(label, content));
+	}
+
+	public void sendToAll(IMessage message) {
+		sendExcept(-1, message);
+	}
+
+	/**
+	 * Sends to every outgoing port except the one the message being processed
+	 * arrived from
+	 */
+	public void sendToOthers(String label, Object content) {
+		sendToOthers(new Message(label, content));
+	}
+
+	public void sendToOthers(IMessage message) {
+		sendExcept(incomingPort, message);
+	}
+
+	private void sendExcept(int excluded, IMessage message) {
+		int degree = topology.degree(node);
+		int[] targets = scratch(degree);
+		int count = 0;
+		int first = topology.firstSlot(node);
+		for (int port = 0; port < degree; port++) {
+			if (port != excluded && topology.isOut(first + port)) {
+				targets[count++] = port;
+			}
+		}
+		if (count > 0) {
+			kernel.send(node, targets, count, message);
+		}
+	}
+
+	private int outPort(String port) {
+		String[] names = portNames();
+		int index = -1;
+		if (portIndex != null) {
+			Integer i = portIndex.get(port);
+			index = i != null ? i : -1;
+		} else {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(port)) {
+					index = i;
+					break;
+				}
+			}
+		}
+		if (index < 0 || !topology.isOut(topology.slot(node, index))) {
+			throw new IllegalArgumentException("Node " + getName() + " has no outgoing port " + port);
+		}
+		return index;
+	}
+
+	private String[] portNames() {
+		if (portNames == null) {
+			int degree = topology.degree(node);
+			String[] names = new String[degree];
+			for (int i = 0; i < degree; i++) {
+				names[i] = topology.portName(node, i);
+			}
+			if (degree > LINEAR_LOOKUP) {
+				portIndex = new HashMap<>(degree * 2);
+				for (int i = 0; i < degree; i++) {
+					portIndex.put(names[i], i);
+				}
+			}
+			portNames = names;
+		}
+		return portNames;
+	}
+
+	private List<String> filterPorts(byte direction) {
+		String[] names = portNames();
+		int first = topology.firstSlot(node);
+		String[] selected = new String[names.length];
+		int count = 0;
+		for (int i = 0; i < names.length; i++) {
+			boolean matches = direction == Topology.OUT ? topology.isOut(first + i) : topology.isIn(first + i);
+			if (matches) {
+				selected[count++] = names[i];
+			}
+		}
+		return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(selected, count)));
+	}
+
+	private int[] scratch(int size) {
+		if (scratch == null || scratch.length < size) {
+			scratch = new int[Math.max(size, 4)];
+		}
+		return scratch;
+	}
+}
@@ -0,0 +1,55 @@
+package dada;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Alternate election on an oriented bidirectional ring, about 1.44 n log n
+ * messages in the worst case.
+ *
+ * Candidates send their identity one way round in even stages and the other
+ * way in odd ones, and receive the identity of the nearest candidate coming
+ * the same way. A candidate that gets a smaller identity is defeated, one that
+ * gets a larger identity goes on to the next stage and one that gets its own
+ * identity back becomes the leader. Only one message per candidate per stage
+ * is sent, and the number of candidates shrinks at least as fast as the
+ * Fibonacci numbers grow backwards.
+ *
+ * The orientation is that of the port order (see {@link #side(String)}):
+ * rings built by {@code dada.sim.Generator} have it.
+ */
+public class Alternate extends RingElection {
+
+	private int stage;
+
+	@Override
+	protected void start(long id) {
+		send(id);
+	}
+
+	@Override
+	protected void elect(String port, IMessage message) {
+		if (stage(message.getContent()) > stage) {
+			this.defer(port, message);
+			return;
+		}
+		long received = value(message.getContent());
+		long id = this.id();
+		if (received == id) {
+			this.lead();
+		} else if (received < id) {
+			this.become(STATE_DEFEATED);
+		} else {
+			stage++;
+			send(id);
+		}
+		this.replay();
+	}
+
+	/**
+	 * Even stages go through the second port (towards the successor), odd ones
+	 * through the first
+	 */
+	private void send(long id) {
+		this.sendTo(MSG_ELECTION, this.getPorts().get(stage % 2 == 0 ? 1 : 0), token(stage, id));
+	}
+}
@@ -1,7 +1,6 @@
 package dada;
 
 import distributed.plugin.runtime.IMessage;
-import distributed.plugin.runtime.engine.Entity;
 
 /**
  * Leader election protocol with multiple initiators, unique ID, synchronous and
@@ -11,90 +10,57 @@ import distributed.plugin.runtime.engine.Entity;
  * and a message with smallest ID will kill every candidates and return back to
  * the sender. A candidate with smaller ID will kill all arrival messages with
  * bigger ID as well.
+ *
+ * Every entity remembers the smallest ID it has seen and relays no bigger one,
+ * so a message goes as far as it can. IDs are numbers (see
+ * {@link RingElection#id()}) carried as a {@code Long}, and relaying forwards
+ * the received message itself. The leader reports its name once elected.
+ * Unlike the String IDs it used to compare, those numbers need the headless
+ * engine, so AsFar no longer runs in DisJ.
+ *
+ * Run it on {@code dada.sim.SyncSimulator} (or with {@code Run --sync}) to get
+ * the synchronous rounds it assumes and their count.
  */
-public class AsFar extends Entity {
-// all possible states
-	public static final int STATE_SLEEP = 0;
-	public static final int STATE_ELECTION = 1;
-	public static final int STATE_PASSIVE = 2;
-	public static final int STATE_FOLLOWER = 3;
-	public static final int STATE_LEADER = 4;
-// all message label will be used in the protocol
-	private static final String MSG_LABEL_ELECTION = "Election";
-	private static final String MSG_LABEL_NOTIFY = "Notify";
-// tracking that both of my messages have returned
-	private boolean leftMin;
-	private boolean rightMin;
-
-	/**
-	 * Default constructor
-	 */
-	public AsFar() {
-		super(STATE_SLEEP);
-	}
-
-	public void init() {
-		String myId = this.getName();
-		this.become(STATE_ELECTION);
-		this.sendToAll(MSG_LABEL_ELECTION, myId);
-	}
+public class AsFar extends RingElection {
+// all possible states, as named by this protocol
+	public static final int STATE_ELECTION = STATE_CANDIDATE;
+	public static final int STATE_PASSIVE = STATE_DEFEATED;
+// smallest ID seen so far
+	private long min = Long.MAX_VALUE;
+// how many of my messages have returned
+	private int returned;
 
 	@Override
-	public void alarmRing() {
-// this protocol does not need this function
+	protected void start(long id) {
+		min = id;
+		this.sendToAll(MSG_ELECTION, Long.valueOf(id));
 	}
 
-	public void receive(String incomingPort, IMessage message) {
-		String msg = (String) message.getContent();
-		String msgLabel = message.getLabel();
-		if (this.getState() == STATE_SLEEP) {
-			this.become(STATE_PASSIVE);
-			this.sendToOthers(MSG_LABEL_ELECTION, msg);
-
-		} else if (this.getState() == STATE_PASSIVE) {
-			if (msgLabel.equals(MSG_LABEL_NOTIFY)) {
-				this.become(STATE_FOLLOWER);
-				this.sendToOthers(MSG_LABEL_NOTIFY, msg);
-			} else {
-				this.sendToOthers(MSG_LABEL_ELECTION, msg);
-			}
-
-		} else if (this.getState() == STATE_ELECTION) {
-			if (msgLabel.equals(MSG_LABEL_ELECTION)) {
-				this.electing(incomingPort, msg);
-			} else {
-				// should not happen!!
-			}
-
-		} else if (this.getState() == STATE_LEADER) {
-			if (msg.equals(MSG_LABEL_NOTIFY)) {
-				System.out.println("Election completed: " + this.getName() + " is a leader");
-			} else {
-				// should not happen!!
+	@Override
+	protected void elect(String port, IMessage message) {
+		long id = (Long) message.getContent();
+		if (id == this.id()) {
+			// my election msg has returned, from every direction it was sent to
+			if (++returned == this.getOutPorts().size()) {
+				this.lead();
+				this.printToConsole("Election completed: " + this.getName() + " is a leader");
 			}
+		} else if (id < min) {
+			this.become(STATE_PASSIVE);
+			relay(port, message);
 		}
 	}
 
-	/*
-	 * Helping function that will compare a received ID with my ID
-	 */
-	private void electing(String incomingPort, String id) {
-
-		String myId = this.getName();
-		if (id.compareTo(myId) < 0) {
-			this.become(STATE_PASSIVE);
-			this.sendToOthers(MSG_LABEL_ELECTION, id);
-		} else if (id.compareTo(myId) == 0) {
-			// my election msg has returned
-			if (this.leftMin == true)
-				this.rightMin = true;
-			else
-				this.leftMin = true;
-		}
-		if (this.rightMin && this.leftMin) {
-			this.become(STATE_LEADER);
+	@Override
+	protected void relay(String port, IMessage message) {
+		if (MSG_ELECTION.equals(message.getLabel())) {
+			long id = (Long) message.getContent();
+			// the smallest ID comes from both directions
+			if (id > min) {
+				return;
+			}
+			min = id;
 		}
-		// send notify to one direction only
-		this.sendTo(MSG_LABEL_NOTIFY, incomingPort, "I " + myId + " is your leader");
+		super.relay(port, message);
 	}
 }
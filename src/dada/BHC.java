@@ -1,6 +1,6 @@
 package dada;
 
-import java.util.List;
+import dada.sim.Whiteboard;
 import distributed.plugin.runtime.engine.BoardAgent;
 
 /**
@@ -8,6 +8,25 @@ import distributed.plugin.runtime.engine.BoardAgent;
  * co­locate agents, known N (number of nodes), known K (number of agents),
  * total reliability and FIFO
  *
+ * Agents explore by cautious walk on the typed {@link Whiteboard}: a port is
+ * marked ACTIVE before going through it and SAFE once the agent came back, and
+ * an agent that finished its share posts a round/share record for its partner.
+ * Ports are addressed by index, the two of a ring being 0 and 1.
+ *
+ * K is the input of the home node, 2 if it has none. With more than two
+ * agents the first two explore one way each without a share, until they are
+ * stopped by the black hole, and the others patrol: they walk the explored
+ * part of the ring from one end to the other, counting its nodes, until n - 1
+ * are known to be safe. This avoids the log n rounds of traversing back and
+ * splitting the rest in two, which dominate the time with two agents. The
+ * agents cannot split the ring into more parts than that, since from a single
+ * home there are only two ends to explore from.
+ *
+ * The price is a second agent: with more than two agents both explorers end
+ * up in the black hole, one from each side, where two agents lose only one.
+ * An explorer cannot tell that the other one is gone before its next step,
+ * as nothing about it reaches the far end of the explored part in time, so
+ * k agents leave k - 2 to report the black hole.
  */
 public class BHC extends BoardAgent {
 	public static final int STATE_NODE_UNKNOWN = 0;
@@ -23,6 +42,11 @@ public class BHC extends BoardAgent {
 	private int round;
 	private int numReq;
 	private int numDone;
+	private int agents;
+	private boolean courier;
+	// port a courier goes on through, traversals completed
+	private int heading;
+	private int leg;
 
 	public BHC() {
 		super(STATE_NODE_UNKNOWN);
@@ -41,27 +65,32 @@ public class BHC extends BoardAgent {
 		this.round = 1;
 		int o = (this.getNetworkSize() - 1) / 2;
 		int e = this.getNetworkSize() - o - 1;
-		List<String> ports = this.getOutPorts();
-		List<String> info = this.readFromBoard();
-		String p = null;
-		System.out.println("Board: " + info);
-		if (info.isEmpty()) {
-			// first agent
-			this.numReq = o;
-			p = ports.get(0);
-			this.appendToBoard("active:" + p);
-		} else {
-			// second agent
-			this.numReq = e;
-			String s = info.get(0);
-			String[] v = s.split(":");
-			for (int i = 0; i < ports.size(); i++) {
-				p = ports.get(i);
-				if (!p.equals(v[1])) {
-					break;
-				}
+		String k = this.getUserInput();
+		this.agents = k != null && !k.trim().isEmpty() ? Integer.parseInt(k.trim()) : 2;
+		Whiteboard board = this.getWhiteboard();
+		// the first agent takes port 0, the second one the other, any other
+		// patrols
+		int p = 0;
+		while (p < this.getDegree() && !board.compareAndSetMark(p, Whiteboard.NONE, Whiteboard.ACTIVE)) {
+			p++;
+		}
+		if (p == this.getDegree()) {
+			this.courier = true;
+			// couriers take a ticket from the home board to alternate directions
+			long ticket;
+			do {
+				ticket = board.record();
+			} while (!board.compareAndSetRecord(ticket, Whiteboard.record(1, Whiteboard.share(ticket) + 1)));
+			if (Log.DEBUG) {
+				Log.debug("Agent: {} patrols", this.getAgentId());
 			}
-			this.appendToBoard("active:" + p);
+			this.patrol(Whiteboard.share(ticket) % 2);
+			return;
+		}
+		// with couriers around explorers go on until stopped
+		this.numReq = this.agents > 2 ? Integer.MAX_VALUE : p == 0 ? o : e;
+		if (Log.DEBUG) {
+			Log.debug("Agent: {} starts through port {}", this.getAgentId(), p);
 		}
 		// set for next exploring
 		this.moveTo(p);
@@ -70,9 +99,9 @@ public class BHC extends BoardAgent {
 	/*
 	 * My first visit to this node, and it is the first visit from this port
 	 */
-	private void myFirstVisit(String port) {
+	private void myFirstVisit(Whiteboard board, int port) {
 		// First arrived safely from safe node
-		this.appendToBoard("safe:" + port);
+		board.setMark(port, Whiteboard.SAFE);
 		// Then go back to say that this node also safe
 		this.explored = true;
 		this.confirm = true;
@@ -83,29 +112,15 @@ public class BHC extends BoardAgent {
 	 * Confirming port check to a previous node that this port is safe then get back
 	 * to the port to finish of the work
 	 */
-	private void confirmVisit(List<String> info, String port) {
-		String s = null;
-		String[] v = null;
-		for (int i = 0; i < info.size(); i++) {
-			s = info.get(i);
-			v = s.split(":");
-
-			if (v.length == 2) {
-				// get my port status
-				if (v[1].equals(port)) {
-					if (v[0].equals("active")) {
-						this.removeRecord(s);
-						this.appendToBoard("safe:" + port);
-					}
-				}
-			} else {
-				// someone left a note
-				// reset my work plan
-				int share = Integer.parseInt(v[2]);
-				this.numReq = this.numReq - share;
-				this.round = Integer.parseInt(v[1]);
-				this.removeRecord(s);
-			}
+	private void confirmVisit(Whiteboard board, int port) {
+		board.compareAndSetMark(port, Whiteboard.ACTIVE, Whiteboard.SAFE);
+		// explorers without a share take no notes (and leave the couriers' ticket)
+		long record = this.agents > 2 ? Whiteboard.NO_RECORD : board.takeRecord();
+		if (record != Whiteboard.NO_RECORD) {
+			// someone left a note
+			// reset my work plan
+			this.numReq = this.numReq - Whiteboard.share(record);
+			this.round = Whiteboard.round(record);
 		}
 		// back to the port
 		this.confirm = false;
@@ -113,7 +128,13 @@ public class BHC extends BoardAgent {
 		this.moveTo(port);
 	}
 
-	public void arrive(String port) {
+	public void arrive(String incomingPort) {
+		int port = this.getArrivalPort();
+		if (this.courier == true) {
+			this.numDone++;
+			this.patrol(this.getAnotherPort(port));
+			return;
+		}
 		// traversing back
 		if (this.traverse == true) {
 			this.traversBack(port);
@@ -126,108 +147,59 @@ public class BHC extends BoardAgent {
 		}
 
 		// keep exploring
-		List<String> info = this.readFromBoard();
-		if (info.isEmpty()) {
+		Whiteboard board = this.getWhiteboard();
+		if (board.isEmpty()) {
 			// I am the first to this node
-			this.myFirstVisit(port);
+			this.myFirstVisit(board, port);
 			this.setNodeState(STATE_NODE_CLEAN);
-		} else {
-			String s = null;
-			String[] v = null;
-
-			if (this.confirm == true) {
-				this.confirmVisit(info, port);
-				return;
-			}
-			System.out.println("Agent: " + this.getAgentId() + " numReq " + numReq);
-
+		} else if (this.confirm == true) {
+			this.confirmVisit(board, port);
+		} else if (this.explored == true) {
 			// my second visit after confirm safe port to previous node
-			if (this.explored == true) {
-				// check my round
-				if (numReq == 0) {
-					// complete round, go backward to find partner
-					// current location
-					System.out.println("Start traversing back from node: " + this.getNodeId());
-					System.out.println("whiteboard:" + this.readFromBoard());
-					this.traverse = true;
-					this.numDone = 0;
-					String p = this.getAnotherPort(port);
-					this.traversBack(p);
-					return;
-				}
-
-				if (info.size() == 1) {
-					// still the first at this node
-					s = info.get(0);
-					v = s.split(":");
-					if (v[1].equals(port)) {
-						if (v[0].equals("active")) {
-							// should not happen, i just marked safe on my first arrival
-							System.err.println("should not happen 1");
-						}
-
-						// find another port to explore
-						List<String> ports = this.getOutPorts();
-						String p = null;
-						for (int i = 0; i < ports.size(); i++) {
-							p = ports.get(i);
-							if (!p.equals(port)) {
-								this.appendToBoard("active:" + p);
-							}
-
-							// move to new port
-							this.explored = false;
-							this.moveTo(p);
-						}
-					} else {
-						// should not happen
-						// i just visited on my first arrival
-						System.err.println("should not happen 2");
-					}
-				} else {
-					// other has visited this node from another port
-
-					for (int i = 0; i < info.size(); i++) {
-						s = info.get(i);
-						v = s.split(":");
-						if (v[0].equals("active")) {
-							if (v[1].equals(port)) {
-								// should not happen
-								// a port that i came from is safe
-								System.err.println("should not happen 3");
-							} else {
-								// someone is exploring it right now!
-								// so wait.
-								this.registerHostEvent(NotifyType.BOARD_UPDATE);
-							}
-
-						} else {
-							if (v[1].equals(port)) {
-								// my port, ignore it
-
-							} else {
-								// another port that was explored and marked
-								// safe by other (No black hole)!!! or
-								// repeat my node territory (backward exploring)!!
-								// should not happen
-								System.err.println("should not happen 4");
-								break;
-
-							}
-						}
-					}
+			if (Log.DEBUG) {
+				Log.debug("Agent: {} numReq {}", this.getAgentId(), numReq);
+			}
+			// check my round
+			if (numReq == 0) {
+				// complete round, go backward to find partner
+				// current location
+				if (Log.DEBUG) {
+					Log.debug("Start traversing back from node: {}", this.getNodeId());
 				}
+				this.traverse = true;
+				this.numDone = 0;
+				this.traversBack(this.getAnotherPort(port));
+				return;
+			}
+			// find another port to explore
+			int p = this.getAnotherPort(port);
+			if (board.compareAndSetMark(p, Whiteboard.NONE, Whiteboard.ACTIVE)) {
+				// move to new port
+				this.explored = false;
+				this.moveTo(p);
+			} else if (board.mark(p) == Whiteboard.ACTIVE) {
+				// someone is exploring it right now!
+				// so wait.
+				this.registerHostEvent(NotifyType.BOARD_UPDATE);
 			} else {
-				// my first visit but other has been here before
-				this.myFirstVisit(port);
+				// another port that was explored and marked
+				// safe by other (No black hole)!!! or
+				// repeat my node territory (backward exploring)!!
+				// should not happen
+				Log.info("Agent: {} should not happen 4 at Node {}, port {}", this.getAgentId(), this.getNodeId(), p);
 			}
+		} else {
+			// my first visit but other has been here before
+			this.myFirstVisit(board, port);
 		}
 	}
 
-	private void traversBack(String port) {
-		String p = this.getAnotherPort(port);
+	private void traversBack(int port) {
+		int p = this.getAnotherPort(port);
 		this.numDone++;
-		System.out.println("Travers back to port " + p);
+		if (Log.DEBUG) {
+			Log.debug("Travers back to port {}", p);
+		}
 		if (isSafe(p)) {
 			this.moveTo(p);
 		} else {
@@ -240,7 +212,7 @@ public class BHC extends BoardAgent {
 				this.become(STATE_AGENT_FOUND_BH);
 				// the active port is a port to BH
 				this.setNodeState(STATE_NODE_TO_BH);
-				System.out.println("Agent: " + this.getAgentId() + " found BH from Node " + this.getNodeId());
+				Log.info("Agent: {} found BH from Node {}", this.getAgentId(), this.getNodeId());
 				// move to my end node
 				this.numDone = 0;
 				this.forward = true;
@@ -248,12 +220,22 @@ public class BHC extends BoardAgent {
 			} else {
 				// compute new share
 				int remain = this.getNetworkSize() - this.numDone;
-				System.out.println("Found the struggling node " + this.getNodeId() + " with remain " + remain);
+				if (Log.DEBUG) {
+					Log.debug("Found the struggling node {} with remain {}", this.getNodeId(), remain);
+				}
 				int share = remain / 2;
 				this.round++;
 				this.numReq = share;
-				// post to board that i will do extra share from my end
-				this.appendToBoard("round:" + round + ":" + share);
+				// post to board that i will do extra share from my end, on top of
+				// any share posted before that my partner has not seen yet
+				Whiteboard board = this.getWhiteboard();
+				long previous;
+				long record;
+				do {
+					previous = board.record();
+					int posted = previous == Whiteboard.NO_RECORD ? 0 : Whiteboard.share(previous);
+					record = Whiteboard.record(round, posted + share);
+				} while (!board.compareAndSetRecord(previous, record));
 				// move to my end node
 				this.numDone = 0;
 				this.forward = true;
@@ -262,37 +244,36 @@ public class BHC extends BoardAgent {
 		}
 	}
 
-	private void toMyEnd(String port) {
-		String p = this.getAnotherPort(port);
+	private void toMyEnd(int port) {
+		int p = this.getAnotherPort(port);
 		if (isSafe(p)) {
 			this.moveTo(p);
 		} else {
 			// arrive at my end
 			this.forward = false;
-			System.out.println("Arrived my end Node: " + this.getNodeId() + "numReq " + this.numReq);
+			if (Log.DEBUG) {
+				Log.debug("Arrived my end Node: {} numReq {}", this.getNodeId(), this.numReq);
+			}
 			if (this.getState() != STATE_AGENT_FOUND_BH) {
 				// arrive at my end of previous round
-				List<String> info = this.readFromBoard();
-				String s = null;
-				String[] v = null;
-
-				System.out.println("Board " + info);
-				if (info.size() > 1) {
-					for (int i = 0; i < info.size(); i++) {
-						s = info.get(i);
-						v = s.split(":");
-						if (!v[0].equals("safe")) {
-							this.explored = false;
-							this.confirm = false;
-							// continue exploring
-							System.out.println("Heading to " + v[0] + " port " + v[1]);
-							this.moveTo(v[1]);
-							break;
-						}
+				Whiteboard board = this.getWhiteboard();
+				int active = -1;
+				for (int i = 0; i < this.getDegree(); i++) {
+					if (board.mark(i) == Whiteboard.ACTIVE) {
+						active = i;
+						break;
+					}
+				}
+				this.explored = false;
+				if (active >= 0) {
+					this.confirm = false;
+					// continue exploring
+					if (Log.DEBUG) {
+						Log.debug("Heading to active port {}", active);
 					}
+					this.moveTo(active);
 				} else {
-					this.explored = false;
-					this.appendToBoard("active:" + p);
+					board.setMark(p, Whiteboard.ACTIVE);
 					this.moveTo(p);
 				}
 			} else {
@@ -302,43 +283,59 @@ public class BHC extends BoardAgent {
 		}
 	}
 
-	private boolean isSafe(String port) {
-		List<String> info = this.readFromBoard();
-		boolean safe = false;
-		String s = null;
-		String[] v = null;
-		for (int i = 0; i < info.size(); i++) {
-			s = info.get(i);
-			v = s.split(":");
-			if (v.length == 2) {
-				if (v[0].equals("safe") && v[1].equals(port)) {
-					safe = true;
-					break;
-				}
+	/*
+	 * Courier: go on through a safe port, or turn back at the end of the explored
+	 * part of the ring. A traversal from one end to the other that counts n - 1
+	 * nodes leaves only the black hole unexplored.
+	 */
+	private void patrol(int next) {
+		if (isSafe(next)) {
+			this.heading = next;
+			this.moveTo(next);
+			return;
+		}
+		if (this.leg > 0 && this.numDone == this.getNetworkSize() - 1) {
+			if (this.getNodeState() == STATE_NODE_TO_BH) {
+				// another courier found it from here
+				this.become(STATE_AGENT_DONE);
+			} else {
+				this.become(STATE_AGENT_FOUND_BH);
+				this.setNodeState(STATE_NODE_TO_BH);
+				Log.info("Agent: {} found BH from Node {}", this.getAgentId(), this.getNodeId());
 			}
+			return;
 		}
-		return safe;
+		int back = this.getAnotherPort(next);
+		if (!isSafe(back)) {
+			// nothing explored on either side yet
+			this.heading = next;
+			this.registerHostEvent(NotifyType.BOARD_UPDATE);
+			return;
+		}
+		this.leg++;
+		this.numDone = 1;
+		this.heading = back;
+		this.moveTo(back);
+	}
+
+	private boolean isSafe(int port) {
+		return this.getWhiteboard().mark(port) == Whiteboard.SAFE;
 	}
 
 	/*
 	 * Get opposite port from a given port in a ring
 	 */
-	private String getAnotherPort(String port) {
-		List<String> ports = this.getOutPorts();
-		String p = null;
-		for (int i = 0; i < ports.size(); i++) {
-			p = ports.get(i);
-			if (!p.equals(port)) {
-				return p;
-			}
-		}
-		return p;
+	private int getAnotherPort(int port) {
+		return port == 0 ? 1 : 0;
 	}
 
 	public void notified(NotifyType arg0) {
+		if (this.courier == true) {
+			this.patrol(this.heading);
+		}
 	}
 
 	public void alarmRing() {
 	}
 
-}
\ No newline at end of file
+}
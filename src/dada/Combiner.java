@@ -0,0 +1,32 @@
+package dada;
+
+/**
+ * How {@link Convergecast} aggregates the inputs of the entities: every entity
+ * turns its input into a partial aggregate, merges those of its children
+ * into it and sends the result to its parent, so a message carries one
+ * partial aggregate whatever the size of the sub-tree. See {@link Combiners}.
+ *
+ * Partial aggregates travel as message contents, so they must be
+ * serializable (or immutable, see {@code Payloads.isImmutable}).
+ *
+ * @param <A> partial aggregate
+ */
+public interface Combiner<A> {
+
+	/**
+	 * Partial aggregate of one entity's input
+	 */
+	A of(String input);
+
+	/**
+	 * Merges two partial aggregates, possibly into the first one
+	 */
+	A merge(A a, A b);
+
+	/**
+	 * The answer from the aggregate of the whole network
+	 */
+	default Object result(A aggregate) {
+		return aggregate;
+	}
+}
@@ -0,0 +1,116 @@
+package dada;
+
+import java.util.Arrays;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * The usual {@link Combiner}s for {@link Convergecast}, over integer inputs.
+ * Entities without an input add nothing to the aggregate.
+ */
+public final class Combiners {
+
+	private Combiners() {
+	}
+
+	public static Combiner<Long> sum() {
+		return of(input -> hasValue(input) ? value(input) : 0L, Long::sum);
+	}
+
+	/**
+	 * Number of entities with an input
+	 */
+	public static Combiner<Long> count() {
+		return of(input -> hasValue(input) ? 1L : 0L, Long::sum);
+	}
+
+	/**
+	 * Long.MAX_VALUE without inputs
+	 */
+	public static Combiner<Long> min() {
+		return of(input -> hasValue(input) ? value(input) : Long.MAX_VALUE, Math::min);
+	}
+
+	/**
+	 * Long.MIN_VALUE without inputs
+	 */
+	public static Combiner<Long> max() {
+		return of(input -> hasValue(input) ? value(input) : Long.MIN_VALUE, Math::max);
+	}
+
+	/**
+	 * The k largest inputs, largest first. O(k) per message.
+	 */
+	public static Combiner<long[]> topK(int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+		return of(input -> hasValue(input) ? new long[] { value(input) } : new long[0], (a, b) -> {
+			long[] top = new long[Math.min(k, a.length + b.length)];
+			for (int i = 0, j = 0, t = 0; t < top.length; t++) {
+				top[t] = j == b.length || (i < a.length && a[i] >= b[j]) ? a[i++] : b[j++];
+			}
+			return top;
+		}, Arrays::toString);
+	}
+
+	/**
+	 * Approximate quantiles, the result is the merged {@link Kll} sketch. O(k)
+	 * per message.
+	 */
+	public static Combiner<Kll> quantiles(int k) {
+		return of(input -> {
+			Kll sketch = new Kll(k);
+			if (hasValue(input)) {
+				sketch.update(value(input));
+			}
+			return sketch;
+		}, Kll::merge);
+	}
+
+	/**
+	 * Approximate number of distinct inputs by a {@link HyperLogLog} of 2^p
+	 * registers. O(2^p) per message.
+	 */
+	public static Combiner<HyperLogLog> distinct(int p) {
+		return of(input -> {
+			HyperLogLog sketch = new HyperLogLog(p);
+			if (hasValue(input)) {
+				sketch.add(value(input));
+			}
+			return sketch;
+		}, HyperLogLog::merge, HyperLogLog::estimate);
+	}
+
+	private static boolean hasValue(String input) {
+		return input != null && !input.trim().isEmpty();
+	}
+
+	private static long value(String input) {
+		return Long.parseLong(input.trim());
+	}
+
+	private static <A> Combiner<A> of(Function<String, A> lift, BinaryOperator<A> merge) {
+		return of(lift, merge, a -> a);
+	}
+
+	private static <A> Combiner<A> of(Function<String, A> lift, BinaryOperator<A> merge,
+			Function<A, Object> result) {
+		return new Combiner<A>() {
+			@Override
+			public A of(String input) {
+				return lift.apply(input);
+			}
+
+			@Override
+			public A merge(A a, A b) {
+				return merge.apply(a, b);
+			}
+
+			@Override
+			public Object result(A aggregate) {
+				return result.apply(aggregate);
+			}
+		};
+	}
+}
@@ -0,0 +1,107 @@
+package dada;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Aggregates the inputs of all the entities at the initiator with a
+ * {@link Combiner}, over a spanning tree built by Shout ({@link ShoutTree}).
+ *
+ * Once an entity knows its children and has a partial aggregate from each of
+ * them, it merges them with its own input and sends the result to its parent.
+ * Intermediate entities never forward raw inputs, so a message is as large as
+ * one partial aggregate: O(1) for a sum, O(k) for a top-k or a sketch.
+ *
+ * There is no request wave, a leaf replies as soon as the tree construction
+ * is over for it. Messages: 2m + n - 1.
+ *
+ * @param <A> partial aggregate
+ */
+public class Convergecast<A> extends ShoutTree {
+
+	// tree built, waiting for the partial aggregates of the children
+	public static final int STATE_COLLECTING = 2;
+	public static final int STATE_DONE = 3;
+
+	private static final String MSG_LABEL_PARTIAL = "Partial";
+
+	private final Combiner<A> combiner;
+
+	private boolean shoutDone = false;
+	private int received = 0;
+	private A aggregate;
+	private Object result;
+
+	public Convergecast(Combiner<A> combiner) {
+		this.combiner = combiner;
+	}
+
+	@Override
+	protected void onMessage(String incomingPort, IMessage message) {
+		// a child may be done before this entity's own shout is
+		if (MSG_LABEL_PARTIAL.equals(message.getLabel()) && getState() != STATE_DONE) {
+			@SuppressWarnings("unchecked")
+			A partial = (A) message.getContent();
+			aggregate = combiner.merge(aggregate(), partial);
+			received++;
+			onPartials();
+		} else {
+			onUnexpectedMessage(incomingPort, message);
+		}
+	}
+
+	@Override
+	protected void onReset() {
+		shoutDone = false;
+		received = 0;
+		aggregate = null;
+		result = null;
+	}
+
+	@Override
+	protected void onShoutDone() {
+		shoutDone = true;
+		become(STATE_COLLECTING);
+		onPartials();
+	}
+
+	private A aggregate() {
+		if (aggregate == null) {
+			aggregate = combiner.of(getUserInput());
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Sends the aggregate of the sub-tree up once every child has; the root
+	 * computes the result instead
+	 */
+	private void onPartials() {
+		if (!shoutDone || received < children().size()) {
+			return;
+		}
+		become(STATE_DONE);
+		if (parent() != null) {
+			sendTo(MSG_LABEL_PARTIAL, parent(), aggregate());
+		} else {
+			result = combiner.result(aggregate());
+			this.printToConsole("Result: " + result);
+		}
+		aggregate = null;
+	}
+
+	/**
+	 * The result of the combiner, in the root once done
+	 */
+	public Object result() {
+		return result;
+	}
+
+	private void onUnexpectedMessage(String incomingPort, IMessage message) {
+		this.printToConsole("ERROR: Node " + getName() + " got message " + message.getLabel() + " ["
+				+ message.getContent() + "] from " + incomingPort + " while on state " + getState());
+	}
+
+	@Override
+	public void alarmRing() {
+	}
+}
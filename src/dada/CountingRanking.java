@@ -0,0 +1,19 @@
+package dada;
+
+/**
+ * Ranking in {@link Ranking#MODE_OFFSETS}: the values are collected up the
+ * spanning tree as usual, but on the way down every node only gets, for each
+ * value in its sub-tree, how many smaller values there are outside the
+ * sub-tree. That is enough to compute its own rank and the offsets of its
+ * children, and it avoids sending all n values to every node.
+ */
+public class CountingRanking extends Ranking {
+
+	public CountingRanking() {
+		super(MODE_OFFSETS);
+	}
+
+	public CountingRanking(boolean keepTree) {
+		super(MODE_OFFSETS, keepTree);
+	}
+}
@@ -0,0 +1,108 @@
+package dada;
+
+/**
+ * Remembers which (origin, sequence) message ids have been seen. An id is the
+ * origin's name and the sequence number, as one String that receivers share.
+ * Per origin it keeps the highest sequence number seen and a 64 bit window of
+ * the ones just below it, in an open addressed table of arrays; checking an
+ * id reads the String in place and allocates nothing but the name of a new
+ * origin, so memory is bounded by the number of origins.
+ *
+ * A sequence number {@link #WINDOW} or more behind the highest one seen from
+ * its origin is reported as a duplicate even if it was not seen.
+ */
+final class DuplicateFilter {
+
+	static final int WINDOW = 64;
+
+	private static final char SEPARATOR = '#';
+
+	// origin names, null marks a free slot
+	private String[] origins = new String[8];
+	private int[] hashes = new int[8];
+	private int[] highest = new int[8];
+	// bit i set: highest - i seen
+	private long[] window = new long[8];
+	private int size;
+
+	static String id(String origin, int sequence) {
+		return origin + SEPARATOR + sequence;
+	}
+
+	private static int sequence(String id) {
+		int sequence = 0;
+		for (int i = id.lastIndexOf(SEPARATOR) + 1; i < id.length(); i++) {
+			sequence = sequence * 10 + id.charAt(i) - '0';
+		}
+		return sequence;
+	}
+
+	/**
+	 * Records the id, false if it was (or counts as) already seen
+	 */
+	boolean add(String id) {
+		int length = id.lastIndexOf(SEPARATOR);
+		int sequence = sequence(id);
+		// String.hashCode() of the origin
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + id.charAt(i);
+		}
+		int slot = find(id, length, hash);
+		if (origins[slot] == null) {
+			origins[slot] = id.substring(0, length);
+			hashes[slot] = hash;
+			highest[slot] = sequence;
+			window[slot] = 1;
+			if (++size * 2 > origins.length) {
+				grow();
+			}
+			return true;
+		}
+		int behind = highest[slot] - sequence;
+		if (behind < 0) {
+			window[slot] = -behind >= WINDOW ? 1 : window[slot] << -behind | 1;
+			highest[slot] = sequence;
+			return true;
+		}
+		if (behind >= WINDOW || (window[slot] & 1L << behind) != 0) {
+			return false;
+		}
+		window[slot] |= 1L << behind;
+		return true;
+	}
+
+	/**
+	 * Slot of the origin, the first {@code length} chars of {@code id}
+	 */
+	private int find(String id, int length, int hash) {
+		int mask = origins.length - 1;
+		int h = hash * 0x9E3779B9;
+		int slot = (h ^ h >>> 16) & mask;
+		while (origins[slot] != null && (hashes[slot] != hash || origins[slot].length() != length
+				|| !id.regionMatches(0, origins[slot], 0, length))) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		String[] oldOrigins = origins;
+		int[] oldHashes = hashes;
+		int[] oldHighest = highest;
+		long[] oldWindow = window;
+		origins = new String[oldOrigins.length * 2];
+		hashes = new int[origins.length];
+		highest = new int[origins.length];
+		window = new long[origins.length];
+		for (int i = 0; i < oldOrigins.length; i++) {
+			if (oldOrigins[i] != null) {
+				int slot = find(oldOrigins[i], oldOrigins[i].length(), oldHashes[i]);
+				origins[slot] = oldOrigins[i];
+				hashes[slot] = oldHashes[i];
+				highest[slot] = oldHighest[i];
+				window[slot] = oldWindow[i];
+			}
+		}
+	}
+}
@@ -17,14 +17,41 @@ public class Flooding extends Entity   {
 	
 	public static final String MESSAGE_TYPE = "broadcast";
 	
+	/**
+	 * One broadcast, every entity relays it once and is done
+	 */
+	public static final int MODE_SINGLE = 0;
+	/**
+	 * Any number of broadcasts from any number of initiators, see
+	 * {@link MultiSourceFlooding}
+	 */
+	public static final int MODE_MULTI = 1;
+
+	private final int mode;
+
+	private DuplicateFilter seen;
+	private List<String> outPorts;
+	private int sequence;
+	private int remaining;
+	private long delivered;
+
 	public Flooding() {
+		this(MODE_SINGLE);
+	}
+
+	protected Flooding(int mode) {
 		super(STATE_IDLE);
+		this.mode = mode;
 	}
 
 	@Override
 	public void receive(String incomingPort, IMessage message) { // invoked when a node receives a message
-		if (this.getState() == STATE_IDLE) {
-			this.printToConsole(this.getName() + ": receiving from " + incomingPort);
+		if (mode == MODE_MULTI) {
+			relay(incomingPort, message);
+		} else if (this.getState() == STATE_IDLE) {
+			if (Log.DEBUG) {
+				Log.debug("{}: receiving from {}", this.getName(), incomingPort);
+			}
 			String[] targets = this.getOutPorts().stream()
 					.filter(port -> !incomingPort.equals(port))
 					.toArray(String[]::new);
@@ -36,6 +63,12 @@ public class Flooding extends Entity   {
 
 	@Override
 	public void init() { // invoked only on the initiator node
+		if (mode == MODE_MULTI) {
+			String input = this.getUserInput();
+			remaining = input != null && !input.isEmpty() ? Integer.parseInt(input.trim()) : 1;
+			broadcast();
+			return;
+		}
 		//String id = this.getName();
 		this.sendToAll(MESSAGE_TYPE, "Message being broadcasted");
 		this.become(STATE_DONE); // must be the last action according to the book
@@ -43,7 +76,55 @@ public class Flooding extends Entity   {
 
 	@Override
 	public void alarmRing() { // invoked when an internal alarm clock of a node is rang
+		if (mode == MODE_MULTI) {
+			broadcast();
+			return;
+		}
 		this.printToConsole(this.getName() + ": Ring");
 	}
 
+	/**
+	 * Broadcasts completely relayed or originated here, this entity's own
+	 * included
+	 */
+	public long getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Sends the next broadcast of this initiator and schedules the one after
+	 */
+	private void broadcast() {
+		String id = DuplicateFilter.id(this.getName(), sequence++);
+		filter().add(id);
+		delivered++;
+		this.sendToAll(MESSAGE_TYPE, id);
+		if (--remaining > 0) {
+			this.setAlarm(1);
+		}
+	}
+
+	private void relay(String incomingPort, IMessage message) {
+		if (!filter().add((String) message.getContent())) {
+			return;
+		}
+		delivered++;
+		if (outPorts == null) {
+			outPorts = this.getOutPorts();
+		}
+		for (int i = 0; i < outPorts.size(); i++) {
+			String port = outPorts.get(i);
+			if (!port.equals(incomingPort)) {
+				this.sendTo(port, message);
+			}
+		}
+	}
+
+	private DuplicateFilter filter() {
+		if (seen == null) {
+			seen = new DuplicateFilter();
+		}
+		return seen;
+	}
+
 }
@@ -24,7 +24,9 @@ public class FloodingUnidir extends Entity   {
 	@Override
 	public void receive(String incomingPort, IMessage message) { // invoked when a node receives a message
 		if (this.getState() == STATE_IDLE) {
-			this.printToConsole(this.getName() + ": receiving from " + incomingPort);
+			if (Log.DEBUG) {
+				Log.debug("{}: receiving from {}", this.getName(), incomingPort);
+			}
 			this.sendToAll(message);
 			this.become(STATE_DONE); // must be the last action according to the book
 		}
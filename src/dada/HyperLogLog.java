@@ -0,0 +1,128 @@
+package dada;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Distinct count estimate of Flajolet et al. with 2^p one-byte registers:
+ * every value is hashed, the first p bits pick a register which keeps the
+ * largest position of the first one bit in the rest. Standard error
+ * 1.04 / sqrt(2^p); two sketches merge by the maximum of each register, so
+ * the same value counted by many entities is counted once.
+ *
+ * On the wire a sketch with few nonzero registers, as near the leaves of a
+ * convergecast, only sends those, as (index gap, value) pairs.
+ */
+public class HyperLogLog implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int MIN_P = 4;
+	public static final int MAX_P = 18;
+
+	private final int p;
+	private transient byte[] registers;
+
+	public HyperLogLog(int p) {
+		if (p < MIN_P || p > MAX_P) {
+			throw new IllegalArgumentException("p must be in [" + MIN_P + ", " + MAX_P + "]: " + p);
+		}
+		this.p = p;
+		this.registers = new byte[1 << p];
+	}
+
+	public void add(long value) {
+		long hash = mix(value);
+		int i = (int) (hash >>> (64 - p));
+		// the sentinel bit bounds the position at 64 - p + 1
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << p) | (1L << (p - 1))) + 1);
+		if (rank > registers[i]) {
+			registers[i] = rank;
+		}
+	}
+
+	/**
+	 * Adds the values of other into this sketch
+	 */
+	public HyperLogLog merge(HyperLogLog other) {
+		if (other.p != p) {
+			throw new IllegalArgumentException("Cannot merge p=" + other.p + " into p=" + p);
+		}
+		for (int i = 0; i < registers.length; i++) {
+			if (other.registers[i] > registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+		return this;
+	}
+
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte r : registers) {
+			sum += Math.scalb(1.0, -r);
+			if (r == 0) {
+				zeros++;
+			}
+		}
+		double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+		double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			// linear counting for small cardinalities
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		int nonzero = 0;
+		for (byte r : registers) {
+			if (r != 0) {
+				nonzero++;
+			}
+		}
+		Varints.writeUnsigned(out, nonzero);
+		if (nonzero < registers.length / 4) {
+			for (int i = 0, last = 0; i < registers.length; i++) {
+				if (registers[i] != 0) {
+					Varints.writeUnsigned(out, i - last);
+					out.writeByte(registers[i]);
+					last = i;
+				}
+			}
+		} else {
+			out.write(registers);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		registers = new byte[1 << p];
+		int nonzero = (int) Varints.readUnsigned(in);
+		if (nonzero < registers.length / 4) {
+			for (int k = 0, i = 0; k < nonzero; k++) {
+				i += (int) Varints.readUnsigned(in);
+				registers[i] = in.readByte();
+			}
+		} else {
+			in.readFully(registers);
+		}
+	}
+
+	/**
+	 * splitmix64 finalizer
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(estimate());
+	}
+}
@@ -0,0 +1,163 @@
+package dada;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Quantile sketch of Karnin, Lang and Liberty. Level h holds values of weight
+ * 2^h; when a level outgrows its capacity it is sorted and every other value,
+ * starting at random at the first or the second, moves up one level. The
+ * capacities shrink geometrically from k at the top level, so the sketch
+ * keeps O(k) values. The rank error of a quantile is typically about 1.7 / k
+ * of the count, and within 3 / k with high probability.
+ *
+ * Sketches merge level by level, in any order.
+ */
+public class Kll implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final double DECAY = 2.0 / 3;
+
+	private final int k;
+	private long[][] levels = { new long[0] };
+	private long count;
+	// Weyl sequence behind the coin flips
+	private long coin = 0;
+
+	public Kll(int k) {
+		if (k < 8) {
+			throw new IllegalArgumentException("k must be at least 8: " + k);
+		}
+		this.k = k;
+	}
+
+	public void update(long value) {
+		long[] level = Arrays.copyOf(levels[0], levels[0].length + 1);
+		level[level.length - 1] = value;
+		levels[0] = level;
+		count++;
+		compress();
+	}
+
+	/**
+	 * Adds the values of other into this sketch
+	 */
+	public Kll merge(Kll other) {
+		if (other.levels.length > levels.length) {
+			levels = grow(levels, other.levels.length);
+		}
+		for (int h = 0; h < other.levels.length; h++) {
+			long[] level = Arrays.copyOf(levels[h], levels[h].length + other.levels[h].length);
+			System.arraycopy(other.levels[h], 0, level, levels[h].length, other.levels[h].length);
+			levels[h] = level;
+		}
+		count += other.count;
+		coin += other.coin;
+		compress();
+		return this;
+	}
+
+	private int capacity(int h) {
+		return Math.max(2, (int) Math.ceil(k * Math.pow(DECAY, levels.length - 1 - h)));
+	}
+
+	private void compress() {
+		for (int h = 0; h < levels.length; h++) {
+			if (levels[h].length > capacity(h)) {
+				compact(h);
+			}
+		}
+	}
+
+	/**
+	 * Moves every other value of level h up, keeps the smallest one when odd
+	 */
+	private void compact(int h) {
+		if (h == levels.length - 1) {
+			levels = grow(levels, levels.length + 1);
+		}
+		long[] level = levels[h];
+		Arrays.sort(level);
+		int kept = level.length & 1;
+		coin += 0x9E3779B97F4A7C15L;
+		int offset = kept + (int) ((coin * 0xBF58476D1CE4E5B9L) >>> 63);
+		long[] up = levels[h + 1];
+		int promoted = (level.length - kept) / 2;
+		long[] next = Arrays.copyOf(up, up.length + promoted);
+		for (int i = 0; i < promoted; i++) {
+			next[up.length + i] = level[offset + 2 * i];
+		}
+		levels[h + 1] = next;
+		levels[h] = Arrays.copyOf(level, kept);
+	}
+
+	private static long[][] grow(long[][] levels, int height) {
+		long[][] grown = Arrays.copyOf(levels, height);
+		for (int h = levels.length; h < height; h++) {
+			grown[h] = new long[0];
+		}
+		return grown;
+	}
+
+	/**
+	 * Number of values added, here or in merged sketches
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Estimated number of values smaller than value
+	 */
+	public long rank(long value) {
+		long rank = 0;
+		for (int h = 0; h < levels.length; h++) {
+			for (long v : levels[h]) {
+				if (v < value) {
+					rank += 1L << h;
+				}
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Estimated q-quantile, 0 <= q <= 1
+	 */
+	public long quantile(double q) {
+		if (count == 0) {
+			throw new IllegalStateException("Empty sketch");
+		}
+		int size = 0;
+		for (long[] level : levels) {
+			size += level.length;
+		}
+		// value and level, sorted by value
+		long[][] weighted = new long[size][];
+		int i = 0;
+		for (int h = 0; h < levels.length; h++) {
+			for (long v : levels[h]) {
+				weighted[i++] = new long[] { v, h };
+			}
+		}
+		Arrays.sort(weighted, (a, b) -> Long.compare(a[0], b[0]));
+		long target = (long) Math.ceil(q * count);
+		long seen = 0;
+		for (long[] w : weighted) {
+			seen += 1L << w[1];
+			if (seen >= target) {
+				return w[0];
+			}
+		}
+		return weighted[size - 1][0];
+	}
+
+	@Override
+	public String toString() {
+		if (count == 0) {
+			return "{count=0}";
+		}
+		return "{count=" + count + ", min~" + quantile(0) + ", median~" + quantile(0.5) + ", max~" + quantile(1)
+				+ "}";
+	}
+}
@@ -0,0 +1,140 @@
+package dada;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Leveled logging for the protocols' per-message tracing, which used to go
+ * through printToConsole and System.out and dominated large runs.
+ *
+ * The level is read once from the {@code dada.log} system property
+ * ({@code off}, the default, {@code info} or {@code debug}) into constants, so
+ * a call guarded as in
+ *
+ * <pre>
+ * if (Log.DEBUG) {
+ * 	Log.debug("{}: receiving from {}", getName(), incomingPort);
+ * }
+ * </pre>
+ *
+ * is compiled away by the JIT when the level is off. Templates are formatted
+ * by a background thread ({@link LogRing}) that writes to the file named by
+ * {@code dada.log.file} ({@code dada.log} by default, {@code -} for standard
+ * output), so arguments must not be modified after the call.
+ */
+public final class Log {
+
+	public static final int LEVEL_OFF = 0;
+	public static final int LEVEL_INFO = 1;
+	public static final int LEVEL_DEBUG = 2;
+
+	public static final int LEVEL = level(System.getProperty("dada.log", "off"));
+	public static final boolean INFO = LEVEL >= LEVEL_INFO;
+	public static final boolean DEBUG = LEVEL >= LEVEL_DEBUG;
+
+	private static final int CAPACITY = 1 << 16;
+
+	private static final LogRing ring = LEVEL > LEVEL_OFF ? open(System.getProperty("dada.log.file", "dada.log"))
+			: null;
+
+	private Log() {
+	}
+
+	public static void info(String template) {
+		if (INFO) {
+			ring.add(LEVEL_INFO, template, null, null, null);
+		}
+	}
+
+	public static void info(String template, Object a) {
+		if (INFO) {
+			ring.add(LEVEL_INFO, template, a, null, null);
+		}
+	}
+
+	public static void info(String template, Object a, Object b) {
+		if (INFO) {
+			ring.add(LEVEL_INFO, template, a, b, null);
+		}
+	}
+
+	public static void info(String template, Object a, Object b, Object c) {
+		if (INFO) {
+			ring.add(LEVEL_INFO, template, a, b, c);
+		}
+	}
+
+	public static void debug(String template) {
+		if (DEBUG) {
+			ring.add(LEVEL_DEBUG, template, null, null, null);
+		}
+	}
+
+	public static void debug(String template, Object a) {
+		if (DEBUG) {
+			ring.add(LEVEL_DEBUG, template, a, null, null);
+		}
+	}
+
+	public static void debug(String template, Object a, Object b) {
+		if (DEBUG) {
+			ring.add(LEVEL_DEBUG, template, a, b, null);
+		}
+	}
+
+	public static void debug(String template, Object a, Object b, Object c) {
+		if (DEBUG) {
+			ring.add(LEVEL_DEBUG, template, a, b, c);
+		}
+	}
+
+	static int level(String name) {
+		switch (name.toLowerCase()) {
+		case "off":
+			return LEVEL_OFF;
+		case "info":
+			return LEVEL_INFO;
+		case "debug":
+			return LEVEL_DEBUG;
+		default:
+			throw new IllegalArgumentException("Unknown log level " + name);
+		}
+	}
+
+	/**
+	 * Appends the level and the template with each {} replaced by the next
+	 * argument
+	 */
+	static void format(StringBuilder line, int level, String template, Object a, Object b, Object c) {
+		line.append(level == LEVEL_DEBUG ? "DEBUG " : "INFO  ");
+		int argument = 0;
+		int from = 0;
+		int at;
+		while ((at = template.indexOf("{}", from)) >= 0) {
+			line.append(template, from, at);
+			line.append(argument == 0 ? a : argument == 1 ? b : c);
+			argument++;
+			from = at + 2;
+		}
+		line.append(template, from, template.length());
+	}
+
+	private static LogRing open(String file) {
+		Writer out;
+		try {
+			out = file.equals("-") ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+					: Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open log file " + file, e);
+		}
+		LogRing ring = new LogRing(CAPACITY, new BufferedWriter(out, 1 << 16));
+		Runtime.getRuntime().addShutdownHook(new Thread(ring::close, "dada-log-close"));
+		return ring;
+	}
+}
@@ -0,0 +1,120 @@
+package dada;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free multi-producer ring of log records drained by one background
+ * thread, which formats them and writes them out.
+ *
+ * Producers claim a sequence number, fill the preallocated slot and publish it
+ * by storing the sequence (plus one) in the slot's entry of
+ * {@code published}. When the ring is full producers wait for the drainer
+ * rather than drop records.
+ */
+final class LogRing {
+
+	private final int mask;
+	private final AtomicLongArray published;
+	private final int[] levels;
+	private final String[] templates;
+	private final Object[] first;
+	private final Object[] second;
+	private final Object[] third;
+
+	private final AtomicLong claimed = new AtomicLong();
+	private volatile long consumed;
+	private volatile boolean closing;
+
+	private final Writer out;
+	private final Thread drainer;
+
+	LogRing(int capacity, Writer out) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two");
+		}
+		mask = capacity - 1;
+		published = new AtomicLongArray(capacity);
+		levels = new int[capacity];
+		templates = new String[capacity];
+		first = new Object[capacity];
+		second = new Object[capacity];
+		third = new Object[capacity];
+		this.out = out;
+		drainer = new Thread(this::drain, "dada-log");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	void add(int level, String template, Object a, Object b, Object c) {
+		long sequence = claimed.getAndIncrement();
+		while (sequence - consumed > mask) {
+			LockSupport.unpark(drainer);
+			Thread.yield();
+		}
+		int slot = (int) sequence & mask;
+		levels[slot] = level;
+		templates[slot] = template;
+		first[slot] = a;
+		second[slot] = b;
+		third[slot] = c;
+		published.set(slot, sequence + 1);
+	}
+
+	/**
+	 * Writes out everything added so far and stops the drainer
+	 */
+	void close() {
+		closing = true;
+		LockSupport.unpark(drainer);
+		try {
+			drainer.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		StringBuilder line = new StringBuilder(128);
+		long next = 0;
+		boolean dirty = false;
+		boolean failed = false;
+		while (true) {
+			int slot = (int) next & mask;
+			try {
+				if (published.get(slot) == next + 1) {
+					line.setLength(0);
+					Log.format(line, levels[slot], templates[slot], first[slot], second[slot], third[slot]);
+					templates[slot] = null;
+					first[slot] = null;
+					second[slot] = null;
+					third[slot] = null;
+					consumed = ++next;
+					if (!failed) {
+						out.append(line).append(System.lineSeparator());
+						dirty = true;
+					}
+				} else if (closing && claimed.get() == next) {
+					if (!failed) {
+						out.flush();
+					}
+					return;
+				} else {
+					if (dirty && !failed) {
+						out.flush();
+						dirty = false;
+					}
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+				}
+			} catch (IOException e) {
+				// keep consuming so that producers never block on a dead sink
+				failed = true;
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package dada;
+
+import java.util.stream.IntStream;
+
+/**
+ * Prime counting without sieving up to x, by Lucy_Hedgehog's method, in
+ * O(x^3/4) time and O(x^1/2) memory. For every v among the values x / i it
+ * keeps S(v), the number of odd integers in [3, v] with no odd prime factor
+ * below p, and removes the multiples of one odd prime p after the other:
+ *
+ * <pre>
+ * S(v) -= S(v / p) - S(p - 1)    for v >= p^2
+ * </pre>
+ *
+ * Once p passes the square root of x, S(x) + 1 is the number of primes up to
+ * x. The values up to sqrt(x) live in {@code small}, S(x / i) in
+ * {@code large[i]}. An update reads values that the same prime also updates,
+ * so large updates compute all differences first and apply them after, both
+ * in parallel on the common fork-join pool; small ones run in place.
+ */
+public final class Lucy {
+
+	// updates of fewer values run in place on the calling thread
+	static final int PARALLEL = 1 << 15;
+
+	private Lucy() {
+	}
+
+	/**
+	 * Number of primes up to x
+	 */
+	public static long pi(long x) {
+		if (x < 2) {
+			return 0;
+		}
+		int r = (int) sqrt(x);
+		long[] small = new long[r + 1];
+		long[] large = new long[r + 1];
+		for (int v = 1; v <= r; v++) {
+			small[v] = (v - 1) / 2;
+			large[v] = (x / v - 1) / 2;
+		}
+		long[] delta = null;
+		for (int p = 3; p <= r; p += 2) {
+			if (small[p] == small[p - 2]) {
+				// p has an odd prime factor below it
+				continue;
+			}
+			long below = small[p - 1];
+			long square = (long) p * p;
+			int end = (int) Math.min(r, x / square);
+			if (end < PARALLEL) {
+				for (int i = 1; i <= end; i++) {
+					large[i] -= at(x, small, large, r, i, p) - below;
+				}
+			} else {
+				if (delta == null) {
+					delta = new long[r + 1];
+				}
+				long[] d = delta;
+				int q = p;
+				IntStream.rangeClosed(1, end).parallel().forEach(i -> d[i] = at(x, small, large, r, i, q) - below);
+				IntStream.rangeClosed(1, end).parallel().forEach(i -> large[i] -= d[i]);
+			}
+			// smaller values first read the larger ones they depend on
+			for (int v = r; v >= square; v--) {
+				small[v] -= small[v / p] - below;
+			}
+		}
+		return large[1] + 1;
+	}
+
+	/**
+	 * S(x / (i p)), from large while it is above r, otherwise from small
+	 */
+	private static long at(long x, long[] small, long[] large, int r, int i, int p) {
+		long ip = (long) i * p;
+		return ip <= r ? large[(int) ip] : small[(int) (x / ip)];
+	}
+
+	/**
+	 * Largest r with r^2 <= x
+	 */
+	static long sqrt(long x) {
+		long r = (long) Math.sqrt((double) x);
+		while (r * r > x) {
+			r--;
+		}
+		while ((r + 1) * (r + 1) <= x) {
+			r++;
+		}
+		return r;
+	}
+}
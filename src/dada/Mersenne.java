@@ -0,0 +1,90 @@
+package dada;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Search for Mersenne primes 2^p - 1 by the Lucas-Lehmer test: with s = 4
+ * and s = s^2 - 2 mod 2^p - 1 repeated p - 2 times, 2^p - 1 is prime if and
+ * only if s ends at 0 (p an odd prime). Since 2^p = 1 modulo 2^p - 1, the
+ * reduction is a shift and an add, without division.
+ *
+ * Every prime exponent is one task on a fork-join pool, submitted in
+ * increasing order, and the primes are reported in that order as soon as
+ * every smaller exponent is done.
+ *
+ * <pre>
+ * java dada.Mersenne [maxExponent] [threads]
+ * </pre>
+ */
+public final class Mersenne {
+
+	private static final BigInteger TWO = BigInteger.valueOf(2);
+	private static final BigInteger FOUR = BigInteger.valueOf(4);
+
+	private Mersenne() {
+	}
+
+	/**
+	 * Whether 2^p - 1 is prime, p being a prime
+	 */
+	public static boolean isPrime(int p) {
+		if (p == 2) {
+			return true;
+		}
+		BigInteger m = BigInteger.ONE.shiftLeft(p).subtract(BigInteger.ONE);
+		BigInteger s = FOUR;
+		for (int i = 0; i < p - 2; i++) {
+			s = reduce(s.multiply(s).subtract(TWO), p, m);
+		}
+		return s.signum() == 0;
+	}
+
+	/**
+	 * x mod 2^p - 1 for x >= -2, as (x mod 2^p) + (x >> p) until it fits
+	 */
+	private static BigInteger reduce(BigInteger x, int p, BigInteger m) {
+		if (x.signum() < 0) {
+			return x.add(m);
+		}
+		while (x.bitLength() > p) {
+			x = x.and(m).add(x.shiftRight(p));
+		}
+		return x.equals(m) ? BigInteger.ZERO : x;
+	}
+
+	/**
+	 * Tests every prime exponent up to max on pool, reports those of Mersenne
+	 * primes in increasing order, returns how many were tested
+	 */
+	public static int search(int max, ForkJoinPool pool, IntConsumer found) {
+		long[] exponents = Primes.primes(max).toArray();
+		List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(exponents.length);
+		for (long p : exponents) {
+			tasks.add(pool.submit(() -> isPrime((int) p)));
+		}
+		for (int i = 0; i < exponents.length; i++) {
+			if (tasks.get(i).join()) {
+				found.accept((int) exponents[i]);
+			}
+		}
+		return exponents.length;
+	}
+
+	public static void main(String[] args) {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		int tested = search(max, pool, p -> System.out.printf("2^%d - 1 is prime (%d ms)%n", p,
+				(System.nanoTime() - start) / 1000000));
+		long ms = Math.max(1, (System.nanoTime() - start) / 1000000);
+		pool.shutdown();
+		System.out.printf("%d exponents up to %d in %d ms on %d threads, %.1f per second%n", tested, max, ms, threads,
+				tested * 1000.0 / ms);
+	}
+}
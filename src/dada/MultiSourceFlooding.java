@@ -0,0 +1,15 @@
+package dada;
+
+/**
+ * Flooding in {@link Flooding#MODE_MULTI}: every initiator sends as many
+ * broadcasts as its user input says (one by default), one per time unit, and
+ * entities never stop relaying. Broadcasts carry an (origin name, sequence) id and
+ * each entity drops the ones it has already relayed with a
+ * {@link DuplicateFilter}, so any number of them can be in flight at once.
+ */
+public class MultiSourceFlooding extends Flooding {
+
+	public MultiSourceFlooding() {
+		super(MODE_MULTI);
+	}
+}
@@ -0,0 +1,147 @@
+package dada;
+
+import java.util.Arrays;
+
+/**
+ * Multiset of ints counting the elements smaller than a value in O(log n):
+ * a treap (binary search tree on the values, heap on random priorities) with
+ * sub-tree sizes, kept in primitive arrays. Node 0 is the empty tree.
+ */
+final class OrderStatisticTree {
+
+	private static final int NIL = 0;
+
+	private int[] keys = new int[16];
+	private int[] priorities = new int[16];
+	private int[] left = new int[16];
+	private int[] right = new int[16];
+	private int[] sizes = new int[16];
+
+	private int root = NIL;
+	private int allocated = 1;
+	// removed nodes, linked through left
+	private int free = NIL;
+	// Weyl sequence behind the priorities
+	private int seed = 0;
+
+	// results of split
+	private int splitLeft;
+	private int splitRight;
+
+	int size() {
+		return sizes[root];
+	}
+
+	void add(int value) {
+		int node = allocate(value);
+		split(root, value, false);
+		root = merge(merge(splitLeft, node), splitRight);
+	}
+
+	/**
+	 * Removes one occurrence of value, if any
+	 */
+	boolean remove(int value) {
+		split(root, value, false);
+		int smaller = splitLeft;
+		split(splitRight, value, true);
+		int equal = splitLeft;
+		int larger = splitRight;
+		boolean found = equal != NIL;
+		if (found) {
+			int removed = equal;
+			equal = merge(left[removed], right[removed]);
+			left[removed] = free;
+			free = removed;
+		}
+		root = merge(merge(smaller, equal), larger);
+		return found;
+	}
+
+	/**
+	 * Number of elements strictly smaller than value
+	 */
+	int countLess(int value) {
+		int count = 0;
+		int node = root;
+		while (node != NIL) {
+			if (keys[node] < value) {
+				count += sizes[left[node]] + 1;
+				node = right[node];
+			} else {
+				node = left[node];
+			}
+		}
+		return count;
+	}
+
+	private int allocate(int value) {
+		int node;
+		if (free != NIL) {
+			node = free;
+			free = left[node];
+		} else {
+			if (allocated == keys.length) {
+				int capacity = keys.length * 2;
+				keys = Arrays.copyOf(keys, capacity);
+				priorities = Arrays.copyOf(priorities, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+			}
+			node = allocated++;
+		}
+		seed += 0x9E3779B9;
+		keys[node] = value;
+		priorities[node] = (seed ^ (seed >>> 16)) * 0x85EBCA6B;
+		left[node] = NIL;
+		right[node] = NIL;
+		sizes[node] = 1;
+		return node;
+	}
+
+	/**
+	 * Splits tree into splitLeft, the keys smaller than value (or equal if
+	 * inclusive), and splitRight, the others
+	 */
+	private void split(int tree, int value, boolean inclusive) {
+		if (tree == NIL) {
+			splitLeft = NIL;
+			splitRight = NIL;
+		} else if (keys[tree] < value || (inclusive && keys[tree] == value)) {
+			split(right[tree], value, inclusive);
+			right[tree] = splitLeft;
+			update(tree);
+			splitLeft = tree;
+		} else {
+			split(left[tree], value, inclusive);
+			left[tree] = splitRight;
+			update(tree);
+			splitRight = tree;
+		}
+	}
+
+	/**
+	 * Joins two trees, every key of a not larger than those of b
+	 */
+	private int merge(int a, int b) {
+		if (a == NIL) {
+			return b;
+		}
+		if (b == NIL) {
+			return a;
+		}
+		if (priorities[a] > priorities[b]) {
+			right[a] = merge(right[a], b);
+			update(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		update(b);
+		return b;
+	}
+
+	private void update(int node) {
+		sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+	}
+}
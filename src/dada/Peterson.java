@@ -0,0 +1,69 @@
+package dada;
+
+import java.util.List;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Peterson's election on a unidirectional ring, at most 2 n log n messages.
+ *
+ * Each candidate stands for an identity, initially its own. In every phase it
+ * sends that identity forward and relays the first identity it gets from its
+ * predecessor candidate, so it ends up knowing the identities of the two
+ * candidates before it. It survives, standing for its predecessor's identity,
+ * if that one is smaller than both its own and the one before, and is
+ * defeated otherwise; no two consecutive candidates survive. The candidate
+ * that gets back the identity it sent is the only one left and becomes the
+ * leader, which is not necessarily the entity with the smallest identity.
+ *
+ * Runs on bidirectional rings too, using the last outgoing port (the successor
+ * in rings built by {@code dada.sim.Generator}) only.
+ */
+public class Peterson extends RingElection {
+
+	private static final String MSG_SECOND = "Second";
+
+	private long standing;
+	private long previous = -1;
+
+	@Override
+	protected void start(long id) {
+		standing = id;
+		send(MSG_ELECTION, standing);
+	}
+
+	@Override
+	protected void elect(String port, IMessage message) {
+		long received = (Long) message.getContent();
+		if (previous < 0) {
+			if (received == standing) {
+				this.lead();
+				return;
+			}
+			previous = received;
+			send(MSG_SECOND, received);
+		} else {
+			if (previous < standing && previous < received) {
+				standing = previous;
+				previous = -1;
+				send(MSG_ELECTION, standing);
+			} else {
+				this.become(STATE_DEFEATED);
+			}
+		}
+	}
+
+	@Override
+	protected void relay(String port, IMessage message) {
+		this.sendTo(forward(), message);
+	}
+
+	private void send(String label, long value) {
+		this.sendTo(label, forward(), value);
+	}
+
+	private String forward() {
+		List<String> out = this.getOutPorts();
+		return out.get(out.size() - 1);
+	}
+}
@@ -0,0 +1,154 @@
+package dada;
+
+import java.util.ArrayList;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Counts the primes up to n, the input of the initiator, with every entity
+ * sieving a part of [2, n].
+ *
+ * The spanning tree is built by Shout ({@link ShoutTree}). Once an entity
+ * has its children and their sub-tree sizes it sends its own sub-tree size to
+ * its parent. The root then splits [2, n] in proportion to the sizes: every
+ * entity keeps one share of its range, counts the primes in it with a
+ * {@link Sieve}, and passes the rest on to its children, one slice per
+ * sub-tree. The counts are summed on the way back up and the root reports
+ * the total.
+ *
+ * Messages: 2m for the tree and 3 (n - 1) for sizes, ranges and counts.
+ */
+public class PrimeCount extends ShoutTree {
+
+	// tree built, waiting for the range of the sub-tree
+	public static final int STATE_WAITING = 2;
+	// own range counted, waiting for the children's counts
+	public static final int STATE_COUNTING = 3;
+	public static final int STATE_DONE = 4;
+
+	private static final String MSG_LABEL_SIZE = "Size";
+	private static final String MSG_LABEL_RANGE = "Range";
+	private static final String MSG_LABEL_COUNT = "Count";
+
+	private boolean shoutDone = false;
+
+	// sub-tree sizes of the children, in the order they arrived
+	private ArrayList<String> sizePorts = new ArrayList<>();
+	private ArrayList<Integer> sizes = new ArrayList<>();
+	private int subtree = 1;
+
+	private long limit;
+	private int pendingCounts;
+	private long count;
+
+	@Override
+	protected void onMessage(String incomingPort, IMessage message) {
+		String label = message.getLabel();
+		switch (label) {
+		case MSG_LABEL_SIZE:
+			sizePorts.add(incomingPort);
+			sizes.add((Integer) message.getContent());
+			subtree += (Integer) message.getContent();
+			onSizes();
+			break;
+		case MSG_LABEL_RANGE:
+			long[] range = (long[]) message.getContent();
+			onRange(range[0], range[1]);
+			break;
+		case MSG_LABEL_COUNT:
+			count += (Long) message.getContent();
+			pendingCounts--;
+			onCounts();
+			break;
+		default:
+			onUnexpectedMessage(incomingPort, message);
+			break;
+		}
+	}
+
+	@Override
+	protected void onReset() {
+		shoutDone = false;
+		sizePorts.clear();
+		sizes.clear();
+		subtree = 1;
+		limit = 0;
+		pendingCounts = 0;
+		count = 0;
+	}
+
+	@Override
+	protected void onShoutDone() {
+		shoutDone = true;
+		become(STATE_WAITING);
+		onSizes();
+	}
+
+	/**
+	 * Reports the sub-tree size once every child has; the root hands out the
+	 * ranges instead
+	 */
+	private void onSizes() {
+		if (!shoutDone || sizes.size() < children().size()) {
+			return;
+		}
+		if (parent() != null) {
+			sendTo(MSG_LABEL_SIZE, parent(), Integer.valueOf(subtree));
+		} else {
+			String input = getUserInput();
+			limit = input != null && !input.trim().isEmpty() ? Long.parseLong(input.trim()) : 0;
+			onRange(2, limit);
+		}
+	}
+
+	/**
+	 * Counts the first share of [from, to] and gives every child's sub-tree its
+	 * slice of the rest, by size
+	 */
+	private void onRange(long from, long to) {
+		long total = Math.max(0, to - from + 1);
+		long q = total / subtree;
+		long r = total % subtree;
+		// start of the share after the first w sizes' worth
+		int w = 1;
+		long end = from + q + r / subtree;
+		for (int i = 0; i < sizePorts.size(); i++) {
+			long start = end;
+			w += sizes.get(i);
+			end = from + q * w + r * w / subtree;
+			sendTo(MSG_LABEL_RANGE, sizePorts.get(i), new long[] { start, end - 1 });
+		}
+		pendingCounts = sizePorts.size();
+		count += Sieve.count(from, from + q + r / subtree - 1);
+		become(STATE_COUNTING);
+		onCounts();
+	}
+
+	private void onCounts() {
+		if (getState() != STATE_COUNTING || pendingCounts > 0) {
+			return;
+		}
+		become(STATE_DONE);
+		if (parent() != null) {
+			sendTo(MSG_LABEL_COUNT, parent(), Long.valueOf(count));
+		} else {
+			this.printToConsole("Primes up to " + limit + ": " + count);
+		}
+	}
+
+	/**
+	 * The number of primes counted, in the root once done
+	 */
+	public long count() {
+		return count;
+	}
+
+	private void onUnexpectedMessage(String incomingPort, IMessage message) {
+		this.printToConsole("ERROR: Node " + getName() + " got message " + message.getLabel() + " ["
+				+ message.getContent() + "] from " + incomingPort + " while on state " + getState());
+	}
+
+	@Override
+	public void alarmRing() {
+	}
+}
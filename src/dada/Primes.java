@@ -1,6 +1,7 @@
 package dada;
 
 import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
@@ -11,24 +12,28 @@ public class Primes {
 	}
 	
 	
+	/**
+	 * The primes up to n, in increasing order
+	 */
+	static LongStream primes(long n) {
+		return new Sieve(n).primes();
+	}
+
+	/**
+	 * Number of primes up to n, by a segmented sieve (see {@link Sieve}); O(n),
+	 * {@link Lucy#pi(long)} is the one for n beyond sieving
+	 */
 	static long pi(long n) {
-		return LongStream.rangeClosed(2, n)
-				.parallel() // in this case it works
-				.mapToObj(BigInteger::valueOf)
-				.filter(i -> i.isProbablePrime(50))
-				.count();
+		return Sieve.pi(n);
 	}
 
 	public static void main(String[] args) {
 		long start = System.currentTimeMillis();
 
-//		primes().map(p -> BigInteger.TWO.pow(p.intValueExact()).subtract(BigInteger.ONE))
-//				//.parallel() (Won't work, compute-ahead strategy takes exponential time)
-//				.filter(mersenne -> mersenne.isProbablePrime(50))
-//				.limit(20)
-//				.forEach(System.out::println);
-		
-		pi(100000000);
+		// the first 20 Mersenne primes, one Lucas-Lehmer task per exponent
+		Mersenne.search(4423, ForkJoinPool.commonPool(), p -> System.out.println("2^" + p + " - 1"));
+
+		System.out.println("pi(10^8) = " + pi(100000000));
 
 		long finish = System.currentTimeMillis();
 		
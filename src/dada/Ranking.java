@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -13,16 +15,21 @@ import dada.RankingTree.RankingMessageNode;
 import distributed.plugin.runtime.*;
 import distributed.plugin.runtime.engine.*;
 
-public class Ranking extends Entity {
+public class Ranking extends ShoutTree {
 
 	class RankingMessage implements Serializable {
 		private static final long serialVersionUID = 1L;
 
+		// asks the sub-tree of a kept tree for its values
 		public static final int COLLECT = 1;
 		public static final int DATA = 2;
+		// per value of the receiver's sub-tree, how many values outside it are smaller
+		public static final int OFFSETS = 3;
 
 		public int type = COLLECT;
-		public List<Integer> data;
+		// sorted values (DATA) or non-decreasing counts (OFFSETS), delta-varint
+		// encoded on the wire
+		public int[] data;
 
 		public RankingMessage() {
 		}
@@ -30,147 +37,139 @@ public class Ranking extends Entity {
 		public RankingMessage(int type) {
 			this.type = type;
 			if (type == DATA) {
-				this.data = new ArrayList<>();
+				this.data = new int[0];
 			}
 		}
 
-		public RankingMessage(int type, List<Integer> data) {
+		public RankingMessage(int type, int[] data) {
 			this.type = type;
 			this.data = data;
 		}
 
 		private void writeObject(java.io.ObjectOutputStream out) throws IOException {
 			out.writeInt(type);
-			if (type == DATA) {
-				out.writeObject(data);
+			if (type != COLLECT) {
+				Varints.writeSorted(out, data);
 			}
 		}
 
-		@SuppressWarnings("unchecked")
 		private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
 			type = in.readInt();
-			if (type == DATA) {
-				data = (List<Integer>) in.readObject();
+			if (type != COLLECT) {
+				data = Varints.readSorted(in);
 			}
 		}
 
 		@Override
 		public String toString() {
-			return "{type=" + (type == COLLECT ? "COLLECT" : "DATA") + ", data=["
-					+ (data != null ? data.stream().map(Object::toString).collect(Collectors.joining(", "))
+			return "{type=" + (type == COLLECT ? "COLLECT" : type == DATA ? "DATA" : "OFFSETS") + ", data=["
+					+ (data != null ? Arrays.stream(data).mapToObj(Integer::toString).collect(Collectors.joining(", "))
 							: "")
 					+ "]}";
 		}
 	}
 
-	public static final int STATE_IDLE = 0;
-	public static final int STATE_SHOUT_ACTIVE = 1;
-	public static final int STATE_RANKING_IDLE = 2;
 	public static final int STATE_RANKING_COLLECTING = 3;
 	public static final int STATE_RANKING_WAITING = 4;
 	public static final int STATE_DONE = 5;
+	// MODE_STREAMING: ranked, following the changes of the values
+	public static final int STATE_LIVE = 6;
 
-	private static final String MSG_LABEL_SHOUT = "Shout";
-	private static final String MSG_LABEL_RANKING = "Ranking";
+	/**
+	 * The root sends every value down the tree, O(n) payload per node
+	 */
+	public static final int MODE_VALUES = 0;
+	/**
+	 * A parent sends each child, for every value in the child's sub-tree, the
+	 * number of smaller values outside that sub-tree. Downward payload matches
+	 * the upward one: the sum of the sub-tree sizes, O(n log n) on balanced trees
+	 */
+	public static final int MODE_OFFSETS = 1;
+	/**
+	 * As MODE_VALUES, then every entity keeps all the values in an
+	 * {@link OrderStatisticTree} and stays live: {@link #init()} on a live
+	 * entity reads its input again and, if it changed, sends the (old, new) pair
+	 * along the tree. Every entity adjusts its rank from the pair and moves the
+	 * value in its tree, a removal and an insertion of O(log n) each; n - 1
+	 * messages of O(1) payload per change. Changes count from the time the
+	 * entity joins the ranking, when it reads its input; until it is live they
+	 * are sent once it is. An entity the ranking has not reached yet cannot
+	 * tell a change from a start, so {@code init()} there starts a ranking:
+	 * only the one started at the smallest name is built (see
+	 * {@link ShoutTree#singleQuery()}), the others are dropped on the way.
+	 */
+	public static final int MODE_STREAMING = 2;
 
-	private static final String SHOUT_Q = "Q";
-	private static final String SHOUT_YES = "Yes";
+	private static final String MSG_LABEL_RANKING = "Ranking";
+	// MODE_STREAMING: the old value in the high half, the new one in the low
+	// half. Immutable, so receivers share it instead of getting copies.
+	private static final String MSG_LABEL_UPDATE = "Update";
 
-	private int counter = 0;
-	private boolean isRoot = false;
-	private String parent = null;
-	private ArrayList<String> children = new ArrayList<>();
+	private final int mode;
 
 	private int rank = 0;
 	private int value = 0;
 
 	// children that haven't replied a COLLECT request
 	private Set<String> pendingChildren;
-	// currently known values (warn: may grow big)
-	private List<Integer> knownData;
-	// it is very likely that the root node initiates ranking before the tree is
-	// built so there may be a collect messages that cannot be processed immediately
-	IMessage pendingCollect;
-	String pendingCollectPort;
+	// sorted values of the sub-trees that have replied so far, by child
+	private Map<String, int[]> knownData;
+	// sorted values of this node's sub-tree (MODE_OFFSETS only)
+	private int[] subtree;
+	// all the values, once live (MODE_STREAMING only)
+	private OrderStatisticTree known;
+	// the input changed before the entity was live
+	private boolean changed = false;
 
 	public Ranking() {
-		super(STATE_IDLE);
+		this(MODE_VALUES);
+	}
+
+	protected Ranking(int mode) {
+		this(mode, false);
+	}
+
+	/**
+	 * @param keepTree whether every query after the first one reuses the
+	 *                 spanning tree, started at the same entity; the tree costs
+	 *                 2m messages otherwise
+	 */
+	public Ranking(int mode, boolean keepTree) {
+		super(keepTree);
+		this.mode = mode;
 	}
 
 	@Override
 	public void init() {
-		initialize(true);
-		sendToAll(MSG_LABEL_SHOUT, "Q");
-		become(STATE_SHOUT_ACTIVE);
+		if (mode != MODE_STREAMING || getState() == STATE_IDLE) {
+			super.init();
+		} else if (getState() == STATE_LIVE) {
+			onValueChanged();
+		} else {
+			changed = true;
+		}
 	}
 
+	/**
+	 * MODE_STREAMING ranks once and stays live, whichever entities start it
+	 */
 	@Override
-	public void receive(String incomingPort, IMessage message) {
+	protected boolean singleQuery() {
+		return mode == MODE_STREAMING;
+	}
+
+	@Override
+	protected void onMessage(String incomingPort, IMessage message) {
 		String msgLabel = message.getLabel();
 //		this.printToConsole("Node: " + getName() + ", Message: " + msgLabel + " [" + message.getContent()
 //				+ "], From: " + incomingPort);
 
 		switch (this.getState()) {
-		case STATE_IDLE:
-			initialize(false);
-			if (msgLabel.equals(MSG_LABEL_SHOUT) && SHOUT_Q.equals(message.getContent())) {
-				counter = 1;
-				parent = incomingPort;
-				sendTo(MSG_LABEL_SHOUT, incomingPort, SHOUT_YES);
-				if (counter == getPorts().size()) {
-					// leaf node
-					onShoutDone();
-				} else {
-					// build sub-tree
-					String[] others = this.getOutPorts().stream().filter(port -> !incomingPort.equals(port))
-							.toArray(String[]::new);
-					sendTo(MSG_LABEL_SHOUT, others, SHOUT_Q);
-					become(STATE_SHOUT_ACTIVE);
-				}
-			} else {
-				onUnexpectedMessage(incomingPort, message);
-			}
-			break;
 		case STATE_SHOUT_ACTIVE:
-			if (msgLabel.equals(MSG_LABEL_SHOUT)) {
-				if (SHOUT_Q.equals(message.getContent())) {
-					counter += 1; // implicit no
-					if (counter == this.getPorts().size()) {
-						onShoutDone();
-					}
-				} else { // Yes
-					counter += 1;
-					children.add(incomingPort);
-					if (counter == this.getPorts().size()) {
-						onShoutDone();
-					}
-				}
-			} else if (msgLabel.equals(MSG_LABEL_RANKING)) {
-				RankingMessage msg = (RankingMessage) message.getContent();
-				if (msg.type == RankingMessage.COLLECT) {
-					pendingCollect = message;
-					pendingCollectPort = incomingPort;
-				} else {
-					onUnexpectedMessage(incomingPort, message);
-				}
-			} else {
-				onUnexpectedMessage(incomingPort, message);
-			}
-			break;
-		case STATE_RANKING_IDLE:
-			if (msgLabel.endsWith(MSG_LABEL_RANKING)) {
-				RankingMessage msg = (RankingMessage) message.getContent();
-				if (msg.type == RankingMessage.COLLECT) {
-					if (this.children.isEmpty()) { // leaf node
-						sendTo(MSG_LABEL_RANKING, incomingPort,
-								new RankingMessage(RankingMessage.DATA, Arrays.asList(value)));
-						become(STATE_RANKING_WAITING);
-					} else {
-						startCollecting(); // changes state to COLLECTING
-					}
-				} else {
-					onUnexpectedMessage(incomingPort, message);
-				}
+			// a child's sub-tree may be collected before this node's tree is built
+			if (msgLabel.equals(MSG_LABEL_RANKING)
+					&& ((RankingMessage) message.getContent()).type == RankingMessage.DATA) {
+				defer(STATE_RANKING_COLLECTING, incomingPort, message);
 			} else {
 				onUnexpectedMessage(incomingPort, message);
 			}
@@ -179,21 +178,10 @@ public class Ranking extends Entity {
 			if (msgLabel.endsWith(MSG_LABEL_RANKING)) {
 				RankingMessage msg = (RankingMessage) message.getContent();
 				if (msg.type == RankingMessage.DATA) {
-					knownData.addAll(msg.data);
+					knownData.put(incomingPort, msg.data);
 					pendingChildren.remove(incomingPort);
 					if (pendingChildren.isEmpty()) {
-						knownData.add(value);
-						// all children have replied, we are done here
-						if (parent == null) {
-							// root node
-							onRankingDone(knownData);
-						} else {
-							// intermediate node, must forward info to parent node
-							sendTo(MSG_LABEL_RANKING, parent,
-									new RankingMessage(RankingMessage.DATA, knownData));
-							knownData.clear();
-							become(STATE_RANKING_WAITING);
-						}
+						onCollected();
 					}
 				} else {
 					onUnexpectedMessage(incomingPort, message);
@@ -205,11 +193,30 @@ public class Ranking extends Entity {
 		case STATE_RANKING_WAITING:
 			if (msgLabel.endsWith(MSG_LABEL_RANKING)) {
 				RankingMessage msg = (RankingMessage) message.getContent();
-				if (msg.type == RankingMessage.DATA) {
+				if (msg.type == (mode == MODE_OFFSETS ? RankingMessage.OFFSETS : RankingMessage.DATA)) {
 					onRankingDone(msg.data);
 				} else {
 					onUnexpectedMessage(incomingPort, message);
 				}
+			} else if (msgLabel.equals(MSG_LABEL_UPDATE)) {
+				defer(STATE_LIVE, incomingPort, message);
+			} else {
+				onUnexpectedMessage(incomingPort, message);
+			}
+			break;
+		case STATE_DONE:
+			// a new query over the kept tree
+			if (msgLabel.equals(MSG_LABEL_RANKING) && keepsTree()
+					&& ((RankingMessage) message.getContent()).type == RankingMessage.COLLECT) {
+				value = Integer.parseInt(this.getUserInput());
+				startCollecting(true);
+			} else {
+				onUnexpectedMessage(incomingPort, message);
+			}
+			break;
+		case STATE_LIVE:
+			if (msgLabel.equals(MSG_LABEL_UPDATE)) {
+				onUpdate(incomingPort, (Long) message.getContent());
 			} else {
 				onUnexpectedMessage(incomingPort, message);
 			}
@@ -220,62 +227,172 @@ public class Ranking extends Entity {
 		}
 	}
 
+	@Override
+	protected void onReset() {
+		rank = 0;
+		pendingChildren = null;
+		knownData = null;
+		subtree = null;
+		known = null;
+		changed = false;
+	}
+
 	/**
-	 * Common initialization stuff
+	 * Called when a node knows its children: it collects its sub-tree right
+	 * away, the children doing the same, without waiting for the rest of the
+	 * tree. The root of a kept tree has to wake its children up instead.
 	 */
-	private void initialize(boolean root) {
-		isRoot = root;
+	@Override
+	protected void onShoutDone() {
 		value = Integer.parseInt(this.getUserInput());
+		this.printToConsole(
+				"Node: " + getName() + ", Parent: " + parent() + ", Children: " + String.join(", ", children()));
+		startCollecting(reusedTree());
 	}
 
 	/**
-	 * Called when a node has finished building its sub-tree
+	 * Waits for the values of the children's sub-trees, asking for them with a
+	 * COLLECT message if {@code wake}
 	 */
-	private void onShoutDone() {
-		this.printToConsole(
-				"Node: " + getName() + ", Parent: " + parent + ", Children: " + String.join(", ", children));
-		// root node starts ranking, others wait for the COLLECT request
-		if (isRoot) {
-			startCollecting();
+	private void startCollecting(boolean wake) {
+		if (wake) {
+			sendTo(MSG_LABEL_RANKING, children().toArray(String[]::new),
+					new RankingMessage(RankingMessage.COLLECT));
+		}
+
+		// won't reply to parent node until all children have replied
+		pendingChildren = new HashSet<>(children());
+		knownData = new HashMap<>();
+
+		become(STATE_RANKING_COLLECTING);
+		if (pendingChildren.isEmpty()) { // leaf node
+			onCollected();
+		}
+	}
+
+	/**
+	 * All children have replied, the values of the sub-tree go up
+	 */
+	private void onCollected() {
+		subtree = SortedInts.merge(new ArrayList<>(knownData.values()), value);
+		if (parent() == null) {
+			// root node, nothing is outside its sub-tree
+			onRankingDone(mode == MODE_OFFSETS ? null : subtree);
 		} else {
-			become(STATE_RANKING_IDLE);
-			// in case root initiated ranking too early
-			if (pendingCollect != null) {
-				this.receive(pendingCollectPort, pendingCollect);
-				pendingCollect = null;
-				pendingCollectPort = null;
-			}
+			// intermediate node, must forward info to parent node
+			sendTo(MSG_LABEL_RANKING, parent(), new RankingMessage(RankingMessage.DATA, subtree));
+			become(STATE_RANKING_WAITING);
 		}
 	}
 
 	/**
-	 * Sends a COLLECT message to all children.
+	 * Called when node is able to compute its rank. {@code data} holds all the
+	 * values, or in MODE_OFFSETS the number of smaller values outside the
+	 * sub-tree for each value of the sub-tree ({@code null} at the root).
 	 */
-	private void startCollecting() {
-		sendTo(MSG_LABEL_RANKING, children.toArray(String[]::new),
-				new RankingMessage(RankingMessage.COLLECT));
+	private void onRankingDone(int[] data) {
+		if (mode == MODE_OFFSETS) {
+			int i = SortedInts.countLess(subtree, this.value);
+			rank = 1 + i + (data != null ? data[i] : 0);
+			for (Map.Entry<String, int[]> child : knownData.entrySet()) {
+				sendTo(MSG_LABEL_RANKING, child.getKey(),
+						new RankingMessage(RankingMessage.OFFSETS, childOffsets(child.getValue(), data)));
+			}
+		} else {
+			rank = 1 + SortedInts.countLess(data, this.value);
 
-		// won't reply to parent node until all children have replied
-		pendingChildren = new HashSet<>(children);
-		knownData = new ArrayList<>();
+			if (!children().isEmpty()) {
+				sendTo(MSG_LABEL_RANKING, children().toArray(String[]::new),
+						new RankingMessage(RankingMessage.DATA, data));
+			}
+		}
+		knownData = null;
+		subtree = null;
 
-		become(STATE_RANKING_COLLECTING);
+		this.printToConsole("Node: " + getName() + ", Value: " + value + ", Ranking: " + rank);
+
+		if (mode == MODE_STREAMING) {
+			known = new OrderStatisticTree();
+			for (int v : data) {
+				known.add(v);
+			}
+			become(STATE_LIVE);
+			if (changed) {
+				changed = false;
+				onValueChanged();
+			}
+		} else {
+			become(STATE_DONE);
+		}
 	}
 
 	/**
-	 * Called when node is able to compute its rank
+	 * The input of this live entity may have changed
 	 */
-	private void onRankingDone(List<Integer> data) {
-		rank = 1 + (int) data.stream().filter(v -> v < this.value).count();
+	private void onValueChanged() {
+		int current = Integer.parseInt(this.getUserInput());
+		if (current == value) {
+			return;
+		}
+		long update = ((long) value << 32) | (current & 0xFFFFFFFFL);
+		known.remove(value);
+		known.add(current);
+		value = current;
+		rank = 1 + known.countLess(value);
+		forward(null, update);
+		this.printToConsole("Node: " + getName() + ", Value: " + value + ", Ranking: " + rank);
+	}
+
+	/**
+	 * Another entity's value changed
+	 */
+	private void onUpdate(String incomingPort, long update) {
+		int old = (int) (update >> 32);
+		int current = (int) update;
+		known.remove(old);
+		known.add(current);
+		rank += (current < value ? 1 : 0) - (old < value ? 1 : 0);
+		forward(incomingPort, update);
+	}
 
-		if (!children.isEmpty()) {
-			sendTo(MSG_LABEL_RANKING, children.toArray(String[]::new),
-					new RankingMessage(RankingMessage.DATA, data));
+	/**
+	 * Sends an update to the tree neighbours but the one it came from
+	 */
+	private void forward(String incomingPort, long update) {
+		ArrayList<String> ports = new ArrayList<>(children().size() + 1);
+		if (parent() != null && !parent().equals(incomingPort)) {
+			ports.add(parent());
+		}
+		for (String child : children()) {
+			if (!child.equals(incomingPort)) {
+				ports.add(child);
+			}
 		}
+		if (!ports.isEmpty()) {
+			sendTo(MSG_LABEL_UPDATE, ports.toArray(new String[0]), Long.valueOf(update));
+		}
+	}
 
-		this.printToConsole("Node: " + getName() + ", Value: " + value + ", Ranking: " + rank);
+	/**
+	 * The rank of this node's value, once done
+	 */
+	public int rank() {
+		return rank;
+	}
 
-		become(STATE_DONE);
+	/**
+	 * For each value of a child's sub-tree, the number of smaller values outside
+	 * of it: those smaller in the whole network minus those smaller in the child's
+	 * sub-tree
+	 */
+	private int[] childOffsets(int[] values, int[] outside) {
+		int[] offsets = new int[values.length];
+		for (int k = 0; k < values.length; k++) {
+			int j = SortedInts.countLess(subtree, values[k]);
+			int smaller = j + (outside != null ? outside[j] : 0);
+			offsets[k] = smaller - SortedInts.countLess(values, values[k]);
+		}
+		return offsets;
 	}
 
 	/**
@@ -292,14 +409,14 @@ public class Ranking extends Entity {
 			return "IDLE";
 		case STATE_SHOUT_ACTIVE:
 			return "SHOUT_ACTIVE";
-		case STATE_RANKING_IDLE:
-			return "RANKING_IDLE";
 		case STATE_RANKING_COLLECTING:
 			return "RANKING_COLLECTING";
 		case STATE_RANKING_WAITING:
 			return "RANKING_WAITING";
 		case STATE_DONE:
 			return "DONE";
+		case STATE_LIVE:
+			return "LIVE";
 		}
 		return "UNKNOWN" + getState();
 	}
@@ -1,13 +1,21 @@
 package dada;
 
+import java.io.Externalizable;
 import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.ObjectStreamException;
-import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.function.Predicate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
 import distributed.plugin.runtime.*;
 import distributed.plugin.runtime.engine.*;
@@ -38,6 +46,11 @@ import distributed.plugin.runtime.engine.*;
  *         the sender) if there is any new entity in the list
  * 
  *         - Entities must know when they have pending "child ndoes"
+ * 
+ *         - Only the entries that are new to the forwarding entity are
+ *         forwarded (the receiver cannot have them yet, on a tree they only
+ *         come through this entity), plus the entity's own entry the first
+ *         time it sends through each port
  */
 public class RankingTree extends Entity {
 
@@ -49,56 +62,65 @@ public class RankingTree extends Entity {
 
 	private int rank;
 	private int value;
-	private HashSet<String> seenEntities;
-	private HashSet<String> pendingNeighbors;
-	private HashSet<String> doneNeighbors;
+	// entities by name, ports by index in getPorts()
+	private Set<String> seenEntities;
+	private BitSet pendingNeighbors;
+	private BitSet doneNeighbors;
+	private BitSet ownEntrySent;
+	private Map<String, Integer> portIndex;
 
 	/**
-	 * Basic message unit: A pair of {entity, value}
+	 * Basic message unit: A pair of {entity, value}, the entity by its name
+	 * 
+	 * Wire format: the name in modified UTF-8 and a zig-zag varint value
 	 */
-	public class RankingMessageNode implements Serializable {
+	public static class RankingMessageNode implements Externalizable {
 		private static final long serialVersionUID = 1L;
 
-		private String nodeId;
+		private String id;
 		private int nodeValue;
 
 		public RankingMessageNode() {
 
 		}
 
-		public RankingMessageNode(String nodeId, int nodeValue) {
-			this.nodeId = nodeId;
+		public RankingMessageNode(String id, int nodeValue) {
+			this.id = id;
 			this.nodeValue = nodeValue;
 		}
 
-		public String getNodeId() {
-			return nodeId;
+		public String getId() {
+			return id;
 		}
 
 		public int getNodeValue() {
 			return nodeValue;
 		}
 
-		private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-			out.writeObject(nodeId);
-			out.writeInt(nodeValue);
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeUTF(id);
+			Varints.writeSigned(out, nodeValue);
 		}
 
-		private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-			nodeId = (String) in.readObject();
-			nodeValue = in.readInt();
+		@Override
+		public void readExternal(ObjectInput in) throws IOException {
+			id = in.readUTF();
+			nodeValue = (int) Varints.readSigned(in);
 		}
 
 		@Override
 		public String toString() {
-			return "{" + (nodeId != null ? nodeId : "null") + ", " + nodeValue + "}";
+			return "{" + id + ", " + nodeValue + "}";
 		}
 	}
 
 	/**
 	 * Message: a list of RankingMessageNode
+	 * 
+	 * Wire format: a flags byte, varint entry count and the entries
 	 */
-	public class RankingMessage implements Serializable {
+	public static class RankingMessage implements Externalizable {
 		private static final long serialVersionUID = 1L;
 
 		private boolean isFinalUpdate = false;
@@ -127,16 +149,27 @@ public class RankingTree extends Entity {
 			return payload;
 		}
 
-		private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-			out.writeBoolean(isFinalUpdate);
-			out.writeBoolean(nodeIsDone);
-			out.writeObject(payload);
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeByte((isFinalUpdate ? 1 : 0) | (nodeIsDone ? 2 : 0));
+			Varints.writeUnsigned(out, payload.size());
+			for (RankingMessageNode node : payload) {
+				node.writeExternal(out);
+			}
 		}
 
-		private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-			this.isFinalUpdate = in.readBoolean();
-			this.nodeIsDone = in.readBoolean();
-			this.payload = (ArrayList<RankingMessageNode>) in.readObject();
+		@Override
+		public void readExternal(ObjectInput in) throws IOException {
+			int flags = in.readUnsignedByte();
+			this.isFinalUpdate = (flags & 1) != 0;
+			this.nodeIsDone = (flags & 2) != 0;
+			int size = (int) Varints.readUnsigned(in);
+			this.payload = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				RankingMessageNode node = new RankingMessageNode();
+				node.readExternal(in);
+				payload.add(node);
+			}
 		}
 
 		@Override
@@ -168,7 +201,10 @@ public class RankingTree extends Entity {
 
 		RankingMessage m = (RankingMessage) message.getContent();
 
-		this.printToConsole(this.getName() + "  got message " + m + " from " + incomingPort);
+		if (Log.DEBUG) {
+			// the payload is formatted now, it may change once handled
+			Log.debug("{} got message {} from {}", this.getName(), m.toString(), incomingPort);
+		}
 
 		if (this.getState() == STATE_DONE) {
 			this.printToConsole("ERROR: Node " + this.getName() + " is DONE");
@@ -176,37 +212,39 @@ public class RankingTree extends Entity {
 		}
 
 		ArrayList<RankingMessageNode> payload = m.getPayload();
+		List<String> ports = this.getPorts();
+		int from = portIndex.get(incomingPort);
 
 		// neighbor considered this might be its last message so expect nothing new from
 		// it
 		if (m.getIsFinalUpdate()) {
-			pendingNeighbors.remove(incomingPort);
+			pendingNeighbors.clear(from);
 		} else {
-			pendingNeighbors.add(incomingPort); // could be a NOP
+			pendingNeighbors.set(from); // could be a NOP
 		}
 
 		if (m.getNodeIsDone()) {
-			doneNeighbors.add(incomingPort);
+			doneNeighbors.set(from);
 		}
 
-		// to check if there's new info
-		int seenCount = seenEntities.size();
-		
-		payload.forEach(rankingMessageNode -> {
-			if (seenEntities.add(rankingMessageNode.getNodeId())) {
+		// entries seen for the first time, the only ones worth forwarding
+		ArrayList<RankingMessageNode> delta = new ArrayList<>();
+
+		for (RankingMessageNode rankingMessageNode : payload) {
+			if (seenEntities.add(rankingMessageNode.getId())) {
+				delta.add(rankingMessageNode);
 				if (rankingMessageNode.getNodeValue() < this.value) {
 					this.rank += 1;
 				}
 			}
-		});
+		}
 
 		// leaf nodes have only one neighbor, when this neighbor is done so is the leave
 		if (this.isLeaf()) {
 			// allow parent node to terminate
 			if (!m.getNodeIsDone()) {
-				RankingMessage reply = new RankingMessage(true, pendingNeighbors.isEmpty(),
-						new ArrayList<RankingMessageNode>(
-								Arrays.asList(new RankingMessageNode(this.getName(), this.value))));
+				RankingMessage reply = new RankingMessage(true, pendingNeighbors.isEmpty(), withOwnEntry(0,
+						new ArrayList<RankingMessageNode>()));
 				this.sendToAll(MSG_RANKING, reply);
 			}
 
@@ -214,30 +252,28 @@ public class RankingTree extends Entity {
 				this.becomeDone();
 			}
 		} else {
-			// message must be forwarded to other nodes
-			String[] others = this.getOutPorts().stream()
-					.filter(port -> !incomingPort.equals(port))
-					.toArray(String[]::new);
-
-			if (seenCount != seenEntities.size()) {
-				// always include own data to simplify the programming
-				// RankingMessageNode[] newData = Arrays.copyOf(receivedData,
-				// receivedData.length + 1);
-				// newData[receivedData.length] = new RankingMessageNode(this.getName(),
-				// this.value);
-				if (payload.stream().noneMatch(p -> p.getNodeId().equals(this.getName()))) {
-					payload.add(new RankingMessageNode(this.getName(), this.value));
-				}
-
-				RankingMessage m2 = new RankingMessage(pendingNeighbors.isEmpty(), false, payload);
-
-				// must wait for all of them to respond
-				for (String port : others) {
+			if (!delta.isEmpty()) {
+				// message must be forwarded to other nodes
+				boolean isFinal = pendingNeighbors.isEmpty();
+				RankingMessage m2 = new RankingMessage(isFinal, false, delta);
+				RankingMessage m2WithOwn = null;
+
+				for (int port = 0; port < ports.size(); port++) {
+					if (port == from) {
+						continue;
+					}
 					// got new info, all other nodes become pending now
-					pendingNeighbors.add(port); // could be a NOP
+					pendingNeighbors.set(port); // could be a NOP
+					if (ownEntrySent.get(port)) {
+						this.sendTo(MSG_RANKING, ports.get(port), m2);
+					} else {
+						if (m2WithOwn == null) {
+							m2WithOwn = new RankingMessage(isFinal, false, withOwnEntry(-1, new ArrayList<>(delta)));
+						}
+						ownEntrySent.set(port);
+						this.sendTo(MSG_RANKING, ports.get(port), m2WithOwn);
+					}
 				}
-
-				this.sendTo(MSG_RANKING, others, m2);
 			} else if (!pendingNeighbors.isEmpty()) {
 				// still waiting for some people but the node in this specific port
 				// is already done so I must forward termination the others
@@ -245,22 +281,14 @@ public class RankingTree extends Entity {
 				// revisar aca, parece que hay mensajes de mas
 				// pero si los mando no termina ok
 				RankingMessage m2 = new RankingMessage(m.getIsFinalUpdate(), false, new ArrayList<>());
-				this.sendTo(MSG_RANKING,
-						    this.getPorts().stream()
-						    	.filter(port -> !incomingPort.equals(port))
-						    	.filter(port -> !doneNeighbors.contains(port))
-						    	.toArray(String[]::new),
-						    m2);
+				this.sendTo(MSG_RANKING, portsWhere(port -> port != from && !doneNeighbors.get(port)), m2);
 			} else {
 				// reply to sender telling I am done
 				RankingMessage m2 = new RankingMessage(true, true, new ArrayList<>()); // no data needed, this node is not a
 																					// leaf
 				//this.sendToAll(MSG_RANKING, m2);
 
-				this.sendTo(MSG_RANKING, this.getPorts()
-						                     .stream()
-						                     .filter(s -> !doneNeighbors.contains(s))
-						                     .toArray(String[]::new), m2);
+				this.sendTo(MSG_RANKING, portsWhere(port -> !doneNeighbors.get(port)), m2);
 
 				this.becomeDone();
 			}
@@ -276,6 +304,7 @@ public class RankingTree extends Entity {
 		RankingMessage m = new RankingMessage(this.isLeaf(), false,
 				new ArrayList<RankingMessageNode>(Arrays.asList(new RankingMessageNode(this.getName(), this.value))));
 
+		ownEntrySent.set(0, this.getPorts().size());
 		this.sendToAll(MSG_RANKING, m);
 	}
 
@@ -293,14 +322,17 @@ public class RankingTree extends Entity {
 			rank = 1;
 			value = Integer.parseInt(this.getUserInput());
 			seenEntities = new HashSet<>();
-			pendingNeighbors = new HashSet<>();
-			doneNeighbors = new HashSet<>();
-
+			pendingNeighbors = new BitSet();
+			doneNeighbors = new BitSet();
+			ownEntrySent = new BitSet();
+			portIndex = new HashMap<>();
 			for (String port : this.getPorts()) {
-				// Node will be done after this set becomes empty
-				pendingNeighbors.add(port);
+				portIndex.put(port, portIndex.size());
 			}
 
+			// Node will be done after this set becomes empty
+			pendingNeighbors.set(0, this.getPorts().size());
+
 			this.printToConsole("Entity: " + this.getName() + ", value: " + this.value + ", neighbors: "
 					+ pendingNeighborsString());
 
@@ -308,11 +340,30 @@ public class RankingTree extends Entity {
 		}
 	}
 
+	/**
+	 * Appends this node's entry unless it has already been sent through the port
+	 * (-1: caller keeps track)
+	 */
+	private ArrayList<RankingMessageNode> withOwnEntry(int port, ArrayList<RankingMessageNode> payload) {
+		if (port < 0 || !ownEntrySent.get(port)) {
+			payload.add(new RankingMessageNode(this.getName(), this.value));
+			if (port >= 0) {
+				ownEntrySent.set(port);
+			}
+		}
+		return payload;
+	}
+
+	private String[] portsWhere(IntPredicate filter) {
+		List<String> ports = this.getPorts();
+		return IntStream.range(0, ports.size()).filter(filter).mapToObj(ports::get).toArray(String[]::new);
+	}
+
 	private boolean isLeaf() {
 		return this.getPorts().size() == 1;
 	}
 
 	String pendingNeighborsString() {
-		return String.join(",", pendingNeighbors.stream().map(s -> s).toArray(String[]::new));
+		return String.join(",", pendingNeighbors.stream().mapToObj(this.getPorts()::get).toArray(String[]::new));
 	}
 }
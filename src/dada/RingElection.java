@@ -0,0 +1,204 @@
+package dada;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+import distributed.plugin.runtime.IMessage;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Common ground of the ring elections ({@link Stages},
+ * {@link StagesWithFeedback}, {@link Alternate}, {@link Peterson}): the
+ * states, which match those of {@link AsFar}, identities, relaying and the
+ * final notification.
+ *
+ * Every initiator is a candidate; an entity woken up by a message is not and
+ * only relays. Identities are the entities' inputs (distinct non-negative
+ * numbers below 2^48), or the rank of their names in lexicographic order
+ * when they have none, so that without inputs the smallest name wins. The
+ * rank comes from {@link Entity#getNameRank()}, which only the headless
+ * engine in {@code sim} provides: the elections do not run in DisJ. Once
+ * elected, the leader sends a notification round the ring that turns every
+ * other entity into a follower.
+ */
+public abstract class RingElection extends Entity {
+
+	public static final int STATE_SLEEP = 0;
+	public static final int STATE_CANDIDATE = 1;
+	public static final int STATE_DEFEATED = 2;
+	public static final int STATE_FOLLOWER = 3;
+	public static final int STATE_LEADER = 4;
+
+	protected static final String MSG_ELECTION = "Election";
+	protected static final String MSG_NOTIFY = "Notify";
+
+	private static final int VALUE_BITS = 48;
+	private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+	private long id = -1;
+	// messages of a later stage than the candidate is in
+	private ArrayDeque<String> deferredPorts;
+	private ArrayDeque<IMessage> deferredMessages;
+	private boolean replaying;
+	private boolean replayAgain;
+
+	protected RingElection() {
+		super(STATE_SLEEP);
+	}
+
+	@Override
+	public void init() {
+		if (this.getPorts().size() != 2) {
+			throw new IllegalStateException(this.getName() + " is not on a ring");
+		}
+		if (this.getState() == STATE_SLEEP) {
+			this.become(STATE_CANDIDATE);
+			this.start(id());
+		}
+	}
+
+	@Override
+	public void receive(String incomingPort, IMessage message) {
+		handle(incomingPort, message);
+	}
+
+	@Override
+	public void alarmRing() {
+		// not needed by the ring elections
+	}
+
+	/**
+	 * Starts the candidacy, the state is already {@link #STATE_CANDIDATE}
+	 */
+	protected abstract void start(long id);
+
+	/**
+	 * Handles a message received while a candidate
+	 */
+	protected abstract void elect(String port, IMessage message);
+
+	/**
+	 * Handles a message received while defeated (or a follower): passes it on
+	 */
+	protected void relay(String port, IMessage message) {
+		this.sendTo(other(port), message);
+	}
+
+	/**
+	 * This entity's identity
+	 */
+	protected long id() {
+		if (id < 0) {
+			String input = this.getUserInput();
+			id = input != null && !input.trim().isEmpty() ? Long.parseLong(input.trim())
+					: this.getNameRank();
+			if (id < 0 || id > VALUE_MASK) {
+				throw new IllegalArgumentException("Identity of " + this.getName() + " out of range: " + id);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Becomes the leader and notifies everybody else
+	 */
+	protected void lead() {
+		this.become(STATE_LEADER);
+		List<String> out = this.getOutPorts();
+		this.sendTo(MSG_NOTIFY, out.get(out.size() - 1), id());
+	}
+
+	/**
+	 * Keeps a message of a stage the candidate has not reached yet, see
+	 * {@link #replay()}
+	 */
+	protected void defer(String port, IMessage message) {
+		if (deferredPorts == null) {
+			deferredPorts = new ArrayDeque<>(2);
+			deferredMessages = new ArrayDeque<>(2);
+		}
+		deferredPorts.add(port);
+		deferredMessages.add(message);
+	}
+
+	/**
+	 * Handles the deferred messages again, to be called after changing stage or
+	 * state
+	 */
+	protected void replay() {
+		if (replaying) {
+			replayAgain = true;
+			return;
+		}
+		replaying = true;
+		try {
+			do {
+				replayAgain = false;
+				int count = deferredPorts == null ? 0 : deferredPorts.size();
+				for (int i = 0; i < count; i++) {
+					handle(deferredPorts.poll(), deferredMessages.poll());
+				}
+			} while (replayAgain);
+		} finally {
+			replaying = false;
+		}
+	}
+
+	/**
+	 * The port on the other side of the ring from {@code port}
+	 */
+	protected String other(String port) {
+		List<String> ports = this.getPorts();
+		return ports.get(0).equals(port) ? ports.get(1) : ports.get(0);
+	}
+
+	/**
+	 * 0 for the first port, 1 for the second. In the rings built by
+	 * {@code dada.sim.Generator} every entity's first port leads to its
+	 * predecessor, which gives the ring a common orientation.
+	 */
+	protected int side(String port) {
+		return this.getPorts().get(0).equals(port) ? 0 : 1;
+	}
+
+	/**
+	 * Packs a stage number and an identity (or any value below 2^48) into one
+	 * immutable content, which the engines share among receivers instead of
+	 * copying
+	 */
+	protected static Long token(int stage, long value) {
+		return (long) stage << VALUE_BITS | value;
+	}
+
+	protected static int stage(Object token) {
+		return (int) ((Long) token >>> VALUE_BITS);
+	}
+
+	protected static long value(Object token) {
+		return (Long) token & VALUE_MASK;
+	}
+
+	private void handle(String port, IMessage message) {
+		if (MSG_NOTIFY.equals(message.getLabel())) {
+			if (this.getState() != STATE_LEADER) {
+				this.become(STATE_FOLLOWER);
+				this.sendTo(other(port), message);
+			}
+			return;
+		}
+		switch (this.getState()) {
+		case STATE_SLEEP:
+			this.become(STATE_DEFEATED);
+			relay(port, message);
+			break;
+		case STATE_CANDIDATE:
+			elect(port, message);
+			break;
+		case STATE_LEADER:
+			break;
+		default:
+			relay(port, message);
+			break;
+		}
+	}
+}
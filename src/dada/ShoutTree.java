@@ -0,0 +1,319 @@
+package dada;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import distributed.plugin.runtime.IMessage;
+import distributed.plugin.runtime.engine.Entity;
+
+/**
+ * Spanning tree construction by Shout, the first phase of {@link Ranking},
+ * {@link Convergecast} and {@link PrimeCount}: the initiator asks all its
+ * neighbours "Q", an entity asked for the first time answers "Yes" and asks
+ * all the others, any other question counts as a "no". Once every port has
+ * answered, an entity knows its parent and children and
+ * {@link #onShoutDone()} is called; every other message goes to
+ * {@link #onMessage(String, IMessage)}.
+ *
+ * 2m messages. Only the entity's own part of the tree is built by then, not
+ * necessarily its whole sub-tree.
+ *
+ * In protocols that answer repeated queries, like {@link Ranking}, a later
+ * {@link #init()} starts a new query: a "Q" reaching an entity past the
+ * construction drops its tree, along with the protocol's own state of the
+ * previous query ({@link #onReset()}), and the tree is built again. When the
+ * entities keep their tree, a query started again at the root of the previous
+ * one skips the construction: {@link #onShoutDone()} is called at once and
+ * the protocol wakes the rest of the tree itself. {@link #invalidateTree()}
+ * makes the next query rebuild.
+ *
+ * A message that comes before its phase can be put aside with
+ * {@link #defer(int, String, IMessage)} until the entity gets to the state
+ * that handles it, so the phases of neighbouring entities need not be in
+ * step.
+ *
+ * A protocol that runs a {@link #singleQuery()} never builds a second tree,
+ * so several entities may start it at once: the shout messages carry the
+ * name of their root and an entity drops its tree for one whose root has a
+ * smaller name, ignoring the others. Only the tree of the smallest initiator
+ * gets built. Until a port answers this construction, whatever else comes
+ * through it was sent in a dropped tree and is discarded.
+ */
+public abstract class ShoutTree extends Entity {
+
+	public static final int STATE_IDLE = 0;
+	public static final int STATE_SHOUT_ACTIVE = 1;
+
+	protected static final String MSG_LABEL_SHOUT = "Shout";
+
+	private static final String SHOUT_Q = "Q";
+	private static final String SHOUT_YES = "Yes";
+
+	private final boolean keepTree;
+	private boolean treeBuilt = false;
+	private boolean reusedTree = false;
+
+	private int counter = 0;
+	private boolean isRoot = false;
+	private String parent = null;
+	private ArrayList<String> children = new ArrayList<>();
+	// single query: name of the root, ports heard from during the construction
+	private String root = null;
+	private final HashSet<String> answered = new HashSet<>();
+
+	// messages put aside, by the state they wait for
+	private final HashMap<Integer, ArrayDeque<Deferred>> deferred = new HashMap<>();
+
+	private static class Deferred {
+		final String port;
+		final IMessage message;
+
+		Deferred(String port, IMessage message) {
+			this.port = port;
+			this.message = message;
+		}
+	}
+
+	protected ShoutTree() {
+		this(false);
+	}
+
+	/**
+	 * @param keepTree whether later queries started here reuse the tree
+	 */
+	protected ShoutTree(boolean keepTree) {
+		super(STATE_IDLE);
+		this.keepTree = keepTree;
+	}
+
+	@Override
+	public void init() {
+		if (keepTree && treeBuilt && isRoot) {
+			reusedTree = true;
+			onShoutDone();
+		} else {
+			resetTree();
+			isRoot = true;
+			treeBuilt = true;
+			if (singleQuery()) {
+				root = getName();
+			}
+			if (getPorts().isEmpty()) {
+				onShoutDone();
+			} else {
+				sendToAll(MSG_LABEL_SHOUT, question());
+				become(STATE_SHOUT_ACTIVE);
+			}
+		}
+		replay();
+	}
+
+	@Override
+	public void receive(String incomingPort, IMessage message) {
+		dispatch(incomingPort, message);
+		replay();
+	}
+
+	private void dispatch(String incomingPort, IMessage message) {
+		if (singleQuery()) {
+			compete(incomingPort, message);
+			return;
+		}
+		int state = getState();
+		if (MSG_LABEL_SHOUT.equals(message.getLabel()) && (state == STATE_IDLE || state == STATE_SHOUT_ACTIVE)) {
+			shout(incomingPort, message);
+		} else if (MSG_LABEL_SHOUT.equals(message.getLabel()) && SHOUT_Q.equals(message.getContent())) {
+			// the tree is being built again for a new query
+			resetTree();
+			shout(incomingPort, message);
+		} else {
+			onMessage(incomingPort, message);
+		}
+	}
+
+	private void shout(String incomingPort, IMessage message) {
+		if (getState() == STATE_IDLE) {
+			if (!SHOUT_Q.equals(message.getContent())) {
+				onMessage(incomingPort, message);
+				return;
+			}
+			join(incomingPort);
+		} else {
+			answer(incomingPort, SHOUT_YES.equals(message.getContent()));
+		}
+	}
+
+	/**
+	 * Handles a message of a single query: joins the tree with the smallest
+	 * root and drops what belongs to any other
+	 */
+	private void compete(String incomingPort, IMessage message) {
+		int state = getState();
+		if (!MSG_LABEL_SHOUT.equals(message.getLabel())) {
+			if (state != STATE_IDLE && (state != STATE_SHOUT_ACTIVE || answered.contains(incomingPort))) {
+				onMessage(incomingPort, message);
+			}
+			return;
+		}
+		String content = (String) message.getContent();
+		boolean isQuestion = content.startsWith(SHOUT_Q);
+		String from = content.substring(isQuestion ? SHOUT_Q.length() : SHOUT_YES.length());
+		if (isQuestion && (root == null || from.compareTo(root) < 0)) {
+			resetTree();
+			root = from;
+			join(incomingPort);
+		} else if (state == STATE_SHOUT_ACTIVE && from.equals(root)) {
+			answer(incomingPort, !isQuestion);
+		}
+	}
+
+	/**
+	 * Joins the tree as a child of the entity that asked first
+	 */
+	private void join(String incomingPort) {
+		counter = 1;
+		parent = incomingPort;
+		if (singleQuery()) {
+			answered.add(incomingPort);
+		}
+		sendTo(MSG_LABEL_SHOUT, incomingPort, singleQuery() ? SHOUT_YES + root : SHOUT_YES);
+		if (counter == getPorts().size()) {
+			// leaf node
+			onShoutDone();
+		} else {
+			// build sub-tree
+			String[] others = this.getOutPorts().stream().filter(port -> !incomingPort.equals(port))
+					.toArray(String[]::new);
+			sendTo(MSG_LABEL_SHOUT, others, question());
+			become(STATE_SHOUT_ACTIVE);
+		}
+	}
+
+	/**
+	 * Counts the answer of a port, a question being an implicit no
+	 */
+	private void answer(String incomingPort, boolean yes) {
+		counter += 1;
+		if (singleQuery()) {
+			answered.add(incomingPort);
+		}
+		if (yes) {
+			children.add(incomingPort);
+		}
+		if (counter == this.getPorts().size()) {
+			onShoutDone();
+		}
+	}
+
+	private String question() {
+		return singleQuery() ? SHOUT_Q + root : SHOUT_Q;
+	}
+
+	/**
+	 * Handles the messages put aside for the current state, until the state
+	 * has none left
+	 */
+	private void replay() {
+		ArrayDeque<Deferred> queue;
+		while ((queue = deferred.get(getState())) != null) {
+			Deferred next = queue.poll();
+			if (queue.isEmpty()) {
+				deferred.remove(getState());
+			}
+			dispatch(next.port, next.message);
+		}
+	}
+
+	/**
+	 * Puts a message aside until the entity is in the given state, when it is
+	 * received again
+	 */
+	protected void defer(int state, String incomingPort, IMessage message) {
+		deferred.computeIfAbsent(state, s -> new ArrayDeque<>()).add(new Deferred(incomingPort, message));
+	}
+
+	private void resetTree() {
+		counter = 0;
+		isRoot = false;
+		treeBuilt = false;
+		reusedTree = false;
+		parent = null;
+		children.clear();
+		root = null;
+		answered.clear();
+		// what was put aside belongs to the tree being dropped
+		deferred.clear();
+		if (getState() != STATE_IDLE) {
+			become(STATE_IDLE);
+		}
+		onReset();
+	}
+
+	/**
+	 * Makes the next query started here build the tree again, after a change
+	 * of topology. The entities of the old tree drop it when the new
+	 * construction reaches them.
+	 */
+	public void invalidateTree() {
+		treeBuilt = false;
+	}
+
+	/**
+	 * Whether the current query runs on the tree of the previous one, the rest
+	 * of the tree still having to be woken up
+	 */
+	protected boolean reusedTree() {
+		return reusedTree;
+	}
+
+	/**
+	 * Whether the protocol runs a single query, which entities may start
+	 * concurrently: no new tree is ever built once one is
+	 */
+	protected boolean singleQuery() {
+		return false;
+	}
+
+	/**
+	 * Whether queries started at the root reuse the tree of the previous one
+	 */
+	public boolean keepsTree() {
+		return keepTree;
+	}
+
+	/**
+	 * Called when this entity knows its parent and children, the state still
+	 * being {@link #STATE_IDLE} or {@link #STATE_SHOUT_ACTIVE}, or at the root
+	 * of a kept tree when a new query starts, in any state
+	 */
+	protected abstract void onShoutDone();
+
+	/**
+	 * Called when a query drops the tree, before the tree is built again:
+	 * clears what the protocol kept of the previous query
+	 */
+	protected abstract void onReset();
+
+	/**
+	 * Handles a message that is not part of the tree construction
+	 */
+	protected abstract void onMessage(String incomingPort, IMessage message);
+
+	protected boolean isRoot() {
+		return isRoot;
+	}
+
+	/**
+	 * Port to the parent, {@code null} at the root
+	 */
+	protected String parent() {
+		return parent;
+	}
+
+	protected List<String> children() {
+		return children;
+	}
+}
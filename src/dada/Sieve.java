@@ -0,0 +1,219 @@
+package dada;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Segmented sieve of Eratosthenes over a range up to a limit. Only odd
+ * numbers are kept, one bit each, in segments of 32 KB that stay in the cache
+ * while every prime up to the square root of the limit crosses off its
+ * multiples.
+ * Runs of consecutive segments are counted in parallel on the common
+ * fork-join pool, each carrying the next multiple of every prime from one
+ * segment to the next; the primes come out in order.
+ *
+ * Bit i of segment k stands for the odd number 2 (first + k * SEGMENT_BITS +
+ * i) + 1, and is set once that number is known to be composite.
+ */
+public final class Sieve {
+
+	static final int SEGMENT_BITS = 1 << 18;
+	// keeps the segment count an int
+	static final long MAX_LIMIT = 1L << 49;
+	private static final int SEGMENT_WORDS = SEGMENT_BITS / 64;
+
+	// the multiples of these are copied from a pattern rather than crossed off
+	private static final int[] WHEEL = { 3, 5, 7, 11, 13 };
+	private static final int WHEEL_PERIOD = 3 * 5 * 7 * 11 * 13;
+	private static final long[] PATTERN = pattern();
+
+	private final long from;
+	private final long limit;
+	// indexes of the smallest and largest odd numbers in the range
+	private final long first;
+	private final long last;
+	// odd primes up to the square root of the limit, past the wheel
+	private final int[] base;
+	private final int segments;
+	// segments per parallel task
+	private final int run;
+
+	public Sieve(long limit) {
+		this(0, limit);
+	}
+
+	/**
+	 * Sieve of [from, limit]
+	 */
+	public Sieve(long from, long limit) {
+		if (from < 0 || limit > MAX_LIMIT) {
+			throw new IllegalArgumentException("Range out of bounds: [" + from + ", " + limit + "]");
+		}
+		this.from = from;
+		this.limit = limit;
+		this.first = from / 2;
+		this.last = limit < 1 ? -1 : (limit - 1) / 2;
+		this.base = basePrimes((int) Math.sqrt((double) limit) + 1);
+		this.segments = last < first ? 0 : (int) ((last - first) / SEGMENT_BITS) + 1;
+		int tasks = 8 * Runtime.getRuntime().availableProcessors();
+		this.run = Math.max(1, (segments + tasks - 1) / tasks);
+	}
+
+	/**
+	 * Number of primes up to n
+	 */
+	public static long pi(long n) {
+		return new Sieve(n).count();
+	}
+
+	/**
+	 * Number of primes in [from, to]
+	 */
+	public static long count(long from, long to) {
+		return new Sieve(from, to).count();
+	}
+
+	/**
+	 * Number of primes in the range
+	 */
+	public long count() {
+		// 2, and the wheel primes the segments do not see as primes
+		long small = smallPrimes().count();
+		int runs = (segments + run - 1) / run;
+		return small + IntStream.range(0, runs).parallel().mapToLong(this::countRun).sum();
+	}
+
+	/**
+	 * The primes in the range, in increasing order
+	 */
+	public LongStream primes() {
+		// segments on their own, in case the stream is made parallel
+		return LongStream.concat(smallPrimes(), IntStream.range(0, segments).mapToObj(k -> k).flatMapToLong(k -> {
+			long[] words = new long[SEGMENT_WORDS];
+			int bits = sieve(k, words, null, true);
+			long offset = first + (long) k * SEGMENT_BITS;
+			return IntStream.range(0, bits)
+					.filter(i -> (words[i >>> 6] & 1L << i) == 0)
+					.mapToLong(i -> 2 * (offset + i) + 1);
+		}));
+	}
+
+	private LongStream smallPrimes() {
+		return LongStream.concat(LongStream.of(2), IntStream.of(WHEEL).asLongStream())
+				.filter(p -> p >= from && p <= limit);
+	}
+
+	private long countRun(int r) {
+		long[] words = new long[SEGMENT_WORDS];
+		long[] next = new long[base.length];
+		long count = 0;
+		for (int k = r * run, end = Math.min(segments, k + run), start = k; k < end; k++) {
+			int bits = sieve(k, words, next, k == start);
+			int full = bits >>> 6;
+			for (int w = 0; w < full; w++) {
+				count += Long.bitCount(~words[w]);
+			}
+			if ((bits & 63) != 0) {
+				count += Long.bitCount(~words[full] & (1L << bits) - 1);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Sieves segment k into words, returns its number of bits. next holds the
+	 * index of the next multiple of every base prime, left there by the
+	 * previous segment unless this one is the first of a run. Without next,
+	 * every segment is a run.
+	 */
+	private int sieve(int k, long[] words, long[] next, boolean restart) {
+		long offset = first + (long) k * SEGMENT_BITS;
+		int bits = (int) Math.min(SEGMENT_BITS, last + 1 - offset);
+		int shift = (int) (offset % WHEEL_PERIOD);
+		// the pattern runs a word past its period, so a window never wraps
+		for (int w = 0, words64 = (bits + 63) >>> 6; w < words64; w++) {
+			words[w] = window(shift);
+			shift += 64;
+			if (shift >= WHEEL_PERIOD) {
+				shift -= WHEEL_PERIOD;
+			}
+		}
+		if (offset == 0) {
+			// 1 is not a prime (the pattern has the wheel primes as composite)
+			words[0] |= 1;
+		}
+		long end = offset + bits;
+		for (int j = 0; j < base.length; j++) {
+			int p = base[j];
+			long square = (long) p * p / 2;
+			if (square >= end) {
+				break;
+			}
+			long start;
+			if (square >= offset) {
+				start = square;
+			} else if (restart || next == null) {
+				long r = (offset - square) % p;
+				start = r == 0 ? offset : offset + p - r;
+			} else {
+				start = next[j];
+			}
+			int i = (int) (start - offset);
+			for (; i < bits; i += p) {
+				words[i >>> 6] |= 1L << i;
+			}
+			if (next != null) {
+				next[j] = offset + i;
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * 64 bits of the pattern from bit {@code shift}
+	 */
+	private static long window(int shift) {
+		int w = shift >>> 6;
+		int b = shift & 63;
+		return b == 0 ? PATTERN[w] : PATTERN[w] >>> b | PATTERN[w + 1] << (64 - b);
+	}
+
+	/**
+	 * The odd multiples of the wheel primes, over one period and one more word
+	 */
+	private static long[] pattern() {
+		long[] pattern = new long[(WHEEL_PERIOD + 127) / 64 + 1];
+		for (int i = 0; i < pattern.length * 64; i++) {
+			long odd = 2L * (i % WHEEL_PERIOD) + 1;
+			for (int p : WHEEL) {
+				if (odd % p == 0) {
+					pattern[i >>> 6] |= 1L << i;
+					break;
+				}
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Odd primes up to n past the wheel, by a plain sieve
+	 */
+	private static int[] basePrimes(int n) {
+		boolean[] composite = new boolean[n + 1];
+		int count = 0;
+		int[] primes = new int[Math.max(16, (int) (1.3 * n / Math.max(1, Math.log(n))))];
+		for (int i = 3; i <= n; i += 2) {
+			if (composite[i]) {
+				continue;
+			}
+			if (i > WHEEL[WHEEL.length - 1]) {
+				primes[count++] = i;
+			}
+			for (long j = (long) i * i; j <= n; j += 2 * i) {
+				composite[(int) j] = true;
+			}
+		}
+		return Arrays.copyOf(primes, count);
+	}
+}
@@ -0,0 +1,71 @@
+package dada;
+
+import java.util.List;
+
+/**
+ * Helpers for sorted primitive int arrays
+ */
+final class SortedInts {
+
+	private SortedInts() {
+	}
+
+	/**
+	 * Number of elements strictly smaller than {@code value}
+	 */
+	static int countLess(int[] sorted, int value) {
+		return countLess(sorted, sorted.length, value);
+	}
+
+	static int countLess(int[] sorted, int length, int value) {
+		int low = 0;
+		int high = length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Merges already sorted runs, plus one extra value, into a new sorted array.
+	 * Runs are merged pairwise in a balanced way, i.e. O(n log k) for k runs.
+	 */
+	static int[] merge(List<int[]> runs, int extra) {
+		int[][] level = new int[runs.size() + 1][];
+		for (int i = 0; i < runs.size(); i++) {
+			level[i] = runs.get(i);
+		}
+		level[runs.size()] = new int[] { extra };
+		int count = level.length;
+		while (count > 1) {
+			int merged = 0;
+			for (int i = 0; i < count; i += 2) {
+				level[merged++] = i + 1 < count ? merge(level[i], level[i + 1]) : level[i];
+			}
+			count = merged;
+		}
+		return level[0];
+	}
+
+	static int[] merge(int[] a, int[] b) {
+		int[] out = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.length && j < b.length) {
+			out[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+		}
+		while (i < a.length) {
+			out[k++] = a[i++];
+		}
+		while (j < b.length) {
+			out[k++] = b[j++];
+		}
+		return out;
+	}
+}
@@ -0,0 +1,51 @@
+package dada;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Stages election on a bidirectional ring, O(n log n) messages in the worst
+ * case.
+ *
+ * In every stage each candidate sends its identity both ways; the message is
+ * relayed by defeated entities up to the next candidate. A candidate that gets
+ * a smaller identity from either side is defeated, otherwise it goes on to the
+ * next stage, so at most half of the candidates survive a stage. A candidate
+ * that gets its own identity back is the only one left and becomes the leader.
+ * Messages from a later stage (a neighbour can be one stage ahead) wait until
+ * the candidate gets there.
+ */
+public class Stages extends RingElection {
+
+	private int stage;
+	// identities received in this stage through either port, -1 until then
+	private final long[] received = { -1, -1 };
+
+	@Override
+	protected void start(long id) {
+		this.sendToAll(MSG_ELECTION, token(stage, id));
+	}
+
+	@Override
+	protected void elect(String port, IMessage message) {
+		if (stage(message.getContent()) > stage) {
+			this.defer(port, message);
+			return;
+		}
+		received[this.side(port)] = value(message.getContent());
+		if (received[0] < 0 || received[1] < 0) {
+			return;
+		}
+		long id = this.id();
+		if (received[0] == id) {
+			this.lead();
+		} else if (received[0] < id || received[1] < id) {
+			this.become(STATE_DEFEATED);
+		} else {
+			stage++;
+			received[0] = -1;
+			received[1] = -1;
+			this.sendToAll(MSG_ELECTION, token(stage, id));
+		}
+		this.replay();
+	}
+}
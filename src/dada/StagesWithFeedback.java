@@ -0,0 +1,107 @@
+package dada;
+
+import distributed.plugin.runtime.IMessage;
+
+/**
+ * Stages with feedback on a bidirectional ring: as {@link Stages}, but a
+ * candidate only survives a stage if both neighbouring candidates pick it, so
+ * that at most a third of the candidates survive and there are fewer stages.
+ *
+ * A candidate that has both neighbours' identities for the stage answers each
+ * neighbour with a smaller identity than its own: positively to the smaller of
+ * the two (both, when the two are the same candidate), negatively to the
+ * other. It is then defeated, unless its identity is smaller than both
+ * neighbours', in which case it waits for their answers and goes on to the
+ * next stage if both are positive. Answers travel back over a single segment
+ * and the only negative ones go to candidates that lose anyway, so the cost
+ * per stage is at most 3n messages.
+ */
+public class StagesWithFeedback extends RingElection {
+
+	private static final String MSG_FEEDBACK = "Feedback";
+
+	private int stage;
+	// stage in which this entity, if it was a candidate, was defeated
+	private int defeatedIn = -1;
+	// identities received in this stage through either port, -1 until then
+	private final long[] received = { -1, -1 };
+	// answers received in this stage: -1 none, 0 negative, 1 positive
+	private final int[] answers = { -1, -1 };
+
+	@Override
+	protected void start(long id) {
+		this.sendToAll(MSG_ELECTION, token(stage, id));
+	}
+
+	@Override
+	protected void elect(String port, IMessage message) {
+		int side = this.side(port);
+		if (MSG_FEEDBACK.equals(message.getLabel())) {
+			answers[side] = (int) value(message.getContent());
+		} else if (stage(message.getContent()) > stage) {
+			this.defer(port, message);
+			return;
+		} else {
+			received[side] = value(message.getContent());
+			if (received[0] >= 0 && received[1] >= 0) {
+				compare();
+			}
+		}
+		decide();
+	}
+
+	@Override
+	protected void relay(String port, IMessage message) {
+		if (MSG_FEEDBACK.equals(message.getLabel()) && stage(message.getContent()) == defeatedIn) {
+			// the answer of a neighbour to our last candidacy
+			return;
+		}
+		super.relay(port, message);
+	}
+
+	/**
+	 * Answers the neighbours, both identities being known
+	 */
+	private void compare() {
+		long id = this.id();
+		if (received[0] == id) {
+			return;
+		}
+		long smallest = Math.min(received[0], received[1]);
+		for (int side = 0; side < 2; side++) {
+			if (received[side] < id) {
+				this.sendTo(MSG_FEEDBACK, this.getPorts().get(side), token(stage, received[side] == smallest ? 1 : 0));
+			}
+		}
+	}
+
+	private void decide() {
+		if (received[0] < 0 || received[1] < 0) {
+			return;
+		}
+		long id = this.id();
+		if (received[0] == id) {
+			this.lead();
+		} else if (received[0] < id || received[1] < id) {
+			defeat();
+		} else if (answers[0] >= 0 && answers[1] >= 0) {
+			if (answers[0] == 1 && answers[1] == 1) {
+				stage++;
+				received[0] = -1;
+				received[1] = -1;
+				answers[0] = -1;
+				answers[1] = -1;
+				this.sendToAll(MSG_ELECTION, token(stage, id));
+				this.replay();
+			} else {
+				defeat();
+			}
+		}
+	}
+
+	private void defeat() {
+		defeatedIn = stage;
+		this.become(STATE_DEFEATED);
+		this.replay();
+	}
+}
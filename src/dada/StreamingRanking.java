@@ -0,0 +1,14 @@
+package dada;
+
+/**
+ * Ranking in {@link Ranking#MODE_STREAMING}: ranked once as in
+ * {@link Ranking#MODE_VALUES}, then every change of an input, signalled by
+ * {@code init()} on its entity, only sends the old and the new value along the
+ * spanning tree, and every entity adjusts its rank from them.
+ */
+public class StreamingRanking extends Ranking {
+
+	public StreamingRanking() {
+		super(MODE_STREAMING);
+	}
+}
@@ -0,0 +1,76 @@
+package dada;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable length integer encoding (LEB128): 7 bits per byte, high bit set on
+ * every byte but the last. Signed values go through zig-zag first so that
+ * small negative numbers stay short.
+ */
+final class Varints {
+
+	private Varints() {
+	}
+
+	static void writeUnsigned(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readUnsigned(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	static void writeSigned(DataOutput out, long value) throws IOException {
+		writeUnsigned(out, (value << 1) ^ (value >> 63));
+	}
+
+	static long readSigned(DataInput in) throws IOException {
+		long v = readUnsigned(in);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Writes a sorted array as its length, the first value and the (non
+	 * negative) gaps between consecutive values
+	 */
+	static void writeSorted(DataOutput out, int[] sorted) throws IOException {
+		writeUnsigned(out, sorted.length);
+		long previous = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0) {
+				writeSigned(out, sorted[0]);
+			} else {
+				writeUnsigned(out, (long) sorted[i] - previous);
+			}
+			previous = sorted[i];
+		}
+	}
+
+	static int[] readSorted(DataInput in) throws IOException {
+		long length = readUnsigned(in);
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Array too long: " + length);
+		}
+		int[] sorted = new int[(int) length];
+		long previous = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			previous = i == 0 ? readSigned(in) : previous + readUnsigned(in);
+			sorted[i] = (int) previous;
+		}
+		return sorted;
+	}
+}
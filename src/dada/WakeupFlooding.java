@@ -16,7 +16,9 @@ public class WakeupFlooding extends Entity {
 
 	@Override
 	public void receive(String incomingPort, IMessage message) {
-		this.printToConsole(this.getState() + "-" + message.getLabel());
+		if (Log.DEBUG) {
+			Log.debug("{}: {}-{}", this.getName(), this.getState(), message.getLabel());
+		}
 		switch (this.getState()) {
 		case STATE_ASLEEP:
 			if (MSG_WAKE_UP.equals(message.getLabel())) {